@@ -1,69 +1,240 @@
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
 public class A3main {
 
+    // Single buffered writer used for all board rendering
+    private static final PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+
     public static void main(String[] args) {
 
         boolean verbose = false; //prints the formulas for SAT if true
-        if (args.length > 2 && args[2].equals("verbose")) {
-            verbose = true; //prints the formulas for SAT if true
+        boolean headless = false; //turns off all board rendering if true
+        String logFile = null; //appends every move to this binary log if set
+        String satConfig = "default"; //SAT4J configuration for P4 and P8
+        long budgetMs = 0; //solver time budget of a move, 0 for no limit
+        int budgetConflicts = 0; //solver conflict budget of a move, 0 for no limit
+        boolean tornadoCount = false; //adds the total number of tornadoes to the KB if true
+        String topologyName = "hex"; //recomputes the hints of the board for this topology
+        String portfolioFile = null; //races SAT backends and keeps their wins in this file if set
+        boolean printEvents = false; //streams every event of the game to the output if true
+        boolean compile = false; //answers the SAT strategies from BDDs of the frontier components if true
+        String patternFile = null; //answers the SAT strategies from frontier patterns solved before, kept in this file if set
+        boolean sweep = false; //finds the cells of SPS with board-wide sweeps over packed arrays if true
+        long guessMs = 0; //time limit of a guess scored by safety and information gain, 0 for random probing
+        boolean compact = false; //plays with the off-heap board state of CompactAgent if true
+        ArrayList<String> gameOptions = new ArrayList<>(); //the options which change the game, for the move log
+        for (int i = 2; i < args.length; i++) {
+            if (!args[i].equals("verbose") && !args[i].equals("headless") && !args[i].equals("events")
+                    && !args[i].startsWith("log=") && !args[i].startsWith("topology=")) {
+                gameOptions.add(args[i]);
+            }
+            if (args[i].equals("verbose")) {
+                verbose = true;
+            } else if (args[i].equals("headless")) {
+                headless = true;
+            } else if (args[i].startsWith("log=")) {
+                logFile = args[i].substring("log=".length());
+            } else if (args[i].startsWith("sat4j=")) {
+                satConfig = args[i].substring("sat4j=".length());
+            } else if (args[i].startsWith("budget=")) {
+                budgetMs = Long.parseLong(args[i].substring("budget=".length()));
+            } else if (args[i].startsWith("conflicts=")) {
+                budgetConflicts = Integer.parseInt(args[i].substring("conflicts=".length()));
+            } else if (args[i].startsWith("topology=")) {
+                topologyName = args[i].substring("topology=".length());
+            } else if (args[i].equals("count")) {
+                tornadoCount = true;
+            } else if (args[i].equals("compile")) {
+                compile = true;
+            } else if (args[i].startsWith("guess=")) {
+                guessMs = Long.parseLong(args[i].substring("guess=".length()));
+            } else if (args[i].equals("sweep")) {
+                sweep = true;
+            } else if (args[i].equals("compact")) {
+                compact = true;
+            } else if (args[i].equals("events")) {
+                printEvents = true;
+            } else if (args[i].startsWith("patterns=")) {
+                patternFile = args[i].substring("patterns=".length());
+            } else if (args[i].startsWith("portfolio=")) {
+                portfolioFile = args[i].substring("portfolio=".length());
+            }
         }
 
-        // read input from command line
-        // Agent type
-        System.out.println("-------------------------------------------\n");
-        System.out.println("Agent " + args[0] + " plays " + args[1] + "\n");
+        if (compact) {
+            playCompact(args[1], topologyName);
+            return;
+        }
 
         // World
-        World world = World.valueOf(args[1]);
+        int[] size = BoardGenerator.getSize(args[1]);
+        Topology topology = Topology.create(topologyName, size[0], size[1]);
+        BoardView p = BoardGenerator.loadView(args[1], topology);
 
-        char[][] p = world.map;
-        printBoard(p);
-        System.out.println("Start!");
+        // read input from command line
+        // Agent type
+        if (!headless) {
+            System.out.println("-------------------------------------------\n");
+            System.out.println("Agent " + args[0] + " plays " + args[1] + "\n");
+            printBoard(p.toArray());
+            System.out.println("Start!");
+        }
 
         String type = args[0];
-        Game game = new Game(p);
-        Agent agent = new Agent(type, verbose, game);
-        agent.playGame();
+        Game game = new Game(p, topology);
+        Agent agent = new Agent(type, verbose && !headless, game);
+        agent.setHeadless(headless);
+        agent.setSatConfig(satConfig);
+        agent.setUseTornadoCount(tornadoCount);
+        FrontierCompiler compiler = null;
+        if (compile) {
+            compiler = new FrontierCompiler();
+            agent.setCompiler(compiler);
+        }
+        if (budgetMs > 0 || budgetConflicts > 0) {
+            agent.setBudget(new MoveBudget(budgetMs, budgetConflicts));
+        }
+        if (sweep) {
+            agent.setKernel(new NeighbourCountKernel(topology));
+        }
+        GainPolicy guessPolicy = null;
+        if (guessMs > 0) {
+            guessPolicy = new GainPolicy(guessMs);
+            agent.setGuessPolicy(guessPolicy);
+        }
+        CostModel costModel = null;
+        if (type.equals("P9")) {
+            costModel = new CostModel();
+            agent.setCostModel(costModel);
+        }
+        EventStream events = null;
+        if (printEvents) {
+            events = new EventStream(1 << 12);
+            events.subscribe(event -> System.out.println("event " + event));
+            agent.setEventStream(events);
+        }
+        MoveLog moveLog = null;
+        Portfolio portfolio = null;
+        PatternStore patterns = null;
+        try {
+            if (patternFile != null) {
+                patterns = new PatternStore(PatternStore.CAPACITY);
+                patterns.load(Paths.get(patternFile));
+                agent.setPatternStore(patterns);
+            }
+            if (portfolioFile != null) {
+                portfolio = new Portfolio(Portfolio.BACKENDS);
+                portfolio.load(Paths.get(portfolioFile));
+                agent.setPortfolio(portfolio);
+            }
+            if (logFile != null) {
+                moveLog = new MoveLog(Paths.get(logFile));
+                agent.setMoveLog(moveLog, args[1], gameOptions);
+            }
+            GameResult result = agent.playGame();
+            if (events != null) {
+                events.close();
+                if (events.getDropped() > 0) {
+                    System.out.println("events dropped=" + events.getDropped());
+                }
+            }
+            if (headless) {
+                System.out.println(args[1] + " " + result);
+                if (compiler != null) {
+                    System.out.println(compiler);
+                }
+                if (guessPolicy != null) {
+                    System.out.println(guessPolicy);
+                }
+                if (costModel != null) {
+                    System.out.println(costModel);
+                }
+            }
+            if (moveLog != null) {
+                moveLog.close();
+            }
+            if (patterns != null) {
+                patterns.save(Paths.get(patternFile));
+                if (headless) {
+                    System.out.println(patterns);
+                }
+            }
+            if (portfolio != null) {
+                portfolio.save(Paths.get(portfolioFile));
+                if (headless) {
+                    System.out.println(portfolio);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("IOException: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Play a board with CompactAgent and print the result line, without building the cells of Game and Agent
+     *
+     * @param boardId of the board
+     * @param topologyName hex or square
+     */
+    public static void playCompact(String boardId, String topologyName) {
+        // The offsets do not depend on the size, so they are read from a topology of one cell,
+        // whose adjacency is built at once, rather than one of the size of the board
+        int[] stencil = Topology.create(topologyName, 1, 1).getStencil();
+        if (stencil == null) {
+            System.out.println("The compact mode needs a topology with fixed neighbour offsets: hex or square");
+            return;
+        }
+        CompactAgent agent = new CompactAgent(PackedBoard.load(boardId, stencil), stencil);
+        GameResult result = agent.playGame();
+        System.out.println(boardId + " " + result);
+        System.out.println(agent);
     }
 
     //prints the board in the required format - PLEASE DO NOT MODIFY
     public static void printBoard(char[][] board) {
-        System.out.println();
+        out.println();
         // first line
         for (int l = 0; l < board.length + 5; l++) {
-            System.out.print(" ");// shift to start
+            out.print(" ");// shift to start
         }
         for (int j = 0; j < board[0].length; j++) {
-            System.out.print(j);// x indexes
+            out.print(j);// x indexes
             if (j < 10) {
-                System.out.print(" ");
+                out.print(" ");
             }
         }
-        System.out.println();
+        out.println();
         // second line
         for (int l = 0; l < board.length + 3; l++) {
-            System.out.print(" ");
+            out.print(" ");
         }
         for (int j = 0; j < board[0].length; j++) {
-            System.out.print(" -");// separator
+            out.print(" -");// separator
         }
-        System.out.println();
+        out.println();
         // the board
         for (int i = 0; i < board.length; i++) {
             for (int l = i; l < board.length - 1; l++) {
-                System.out.print(" ");// fill with left-hand spaces
+                out.print(" ");// fill with left-hand spaces
             }
             if (i < 10) {
-                System.out.print(" ");
+                out.print(" ");
             }
 
-            System.out.print(i + "/ ");// index+separator
+            out.print(i + "/ ");// index+separator
             for (int j = 0; j < board[0].length; j++) {
-                System.out.print(board[i][j] + " ");// value in the board
+                out.print(board[i][j] + " ");// value in the board
             }
-            System.out.println();
+            out.println();
         }
-        System.out.println();
+        out.println();
+        out.flush();
     }
 
 }
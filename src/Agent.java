@@ -1,17 +1,24 @@
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
 
 import org.logicng.datastructures.Tristate;
+import org.logicng.formulas.CType;
 import org.logicng.formulas.FormulaFactory;
 import org.logicng.formulas.Formula;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
 import org.logicng.io.parsers.ParserException;
 import org.logicng.io.parsers.PropositionalParser;
 import org.logicng.solvers.MiniSat;
 import org.logicng.solvers.SATSolver;
-import org.sat4j.core.VecInt;
-import org.sat4j.minisat.SolverFactory;
 import org.sat4j.specs.ContradictionException;
-import org.sat4j.specs.ISolver;
 import org.sat4j.specs.TimeoutException;
 
 public class Agent {
@@ -27,17 +34,103 @@ public class Agent {
     private ArrayList<Cell> unprovedCells;
     // Proved cells on the board
     private ArrayList<Cell> provedCells;
+    // Cell -> true once it is in provedCells
+    private boolean[] examined;
     // Uncovered cells on the board
     private ArrayList<Cell> uncoveredCells;
     // Tornado cells
     private ArrayList<Cell> tornadoCells;
-    // The length of the board
-    private int boardLength;
+    // Uncovered cells which still have unproved neighbours, in the order they were uncovered.
+    // A doubly linked list over the board indexes, so that it changes without allocating.
+    private int[] frontierNext;
+    private int[] frontierPrev;
+    private boolean[] inFrontier;
+    private int frontierHead;
+    private int frontierTail;
+    // The number of unproved and flagged neighbours of every cell, by index y * width + x
+    private int[] nUnknowns;
+    private int[] nDangers;
+    // The width and height of the board
+    private int width;
+    private int height;
+    // Neighbourhood of the cells
+    private Topology topology;
     // The number of cells whose hint is 0 and neighbours have not been probed yet.
     private int cellsWithFreeNeighbours;
+    // The provedCells before this position have been scanned for free neighbours, which are all proved since
+    private int nFreeScanned;
     private FormulaFactory f = new FormulaFactory();
+    // The factory caches every formula it creates, so it is cleared once it holds this many
+    public static final int FACTORY_LIMIT = 20000;
+    // The number of times the factory was cleared
+    private int factoryClears;
     private PropositionalParser p = new PropositionalParser(f);
     private int counter;
+    // Turns off all board rendering if true
+    private boolean headless;
+    // The number of cells uncovered or flagged by the agent
+    private int moves;
+    // The number of deductions made by each strategy
+    // Counted in arrays rather than Integers, so that counting does not allocate
+    private HashMap<String, int[]> deductions;
+    // Time spent inside the SAT solvers
+    private long solverNanos;
+    // The number of times a solver was asked for a safe cell
+    private int solverCalls;
+    // Picks the cells of the random probing strategy, seeded for reproducible tournaments
+    private long seed = System.nanoTime();
+    private Random random = new Random(seed);
+    // Probes the frontier components of the DNF strategies as fork/join tasks if true
+    private boolean forkComponents;
+    private GameResult.Outcome outcome;
+    // Optional log of every move made by the agent
+    private MoveLog moveLog;
+    // Optional stream of the events of the game
+    private EventStream events;
+    // The strategy which deduced the next move
+    private String strategy = "HINT";
+    // The solver time already attributed to logged moves
+    private long loggedSolverNanos;
+    // SAT4J configuration for the CNF strategies: default, glucose or light
+    private String satConfig = "default";
+    // Game-long SAT4J solver for the CNF strategies
+    private Sat4jBackend sat4j;
+    // Per-move solver budget, null for no limit
+    private MoveBudget budget;
+    // True if the budget of the current move has run out
+    private boolean budgetHit;
+    // The number of moves whose budget has run out
+    private int budgetHits;
+    // Estimated chance of a tornado in a cell without uncovered neighbours
+    private static final double UNKNOWN_RISK = 0.3;
+    // Adds the total number of tornadoes to the KB of the SAT strategies if true
+    private boolean useTornadoCount;
+    // Races several SAT backends in the SAT strategies if set
+    private Portfolio portfolio;
+    // Answers the SAT strategies from BDDs of the frontier components if set
+    private FrontierCompiler compiler;
+    // Variable -> exact chance of a tornado, from the last compilation of the frontier
+    private HashMap<String, Double> probabilities;
+    // The number of provedCells whose fact has been added to sat4j
+    private int nEncodedFacts;
+    // Uncovered cells whose clause has been added to sat4j
+    private HashSet<Cell> encodedClauses;
+    // Answers the SAT strategies from frontier patterns solved before, and learns new ones, if set
+    private PatternStore patterns;
+    // True if the patterns showed that no cell can be proved safe this move
+    private boolean patternsSettled;
+    // Finds the cells of SPS with board-wide sweeps over packed arrays instead of scanning cell by cell, if set
+    private NeighbourCountKernel kernel;
+    // The cells found by the last sweep of the kernel, and the next one to try
+    private int kernelFound;
+    private int kernelNext;
+    // Chooses the guesses by their chance of being safe and what they reveal, instead of at random, if set
+    private GainPolicy guessPolicy;
+    // Predicts the cost of the solver stages of the adaptive agent from the frontier, learned while playing
+    private CostModel costModel;
+    // The stages of P9 which decide every move, with and without the compiler
+    private static final String[] SAT_STAGES = {"DNF", "CNF"};
+    private static final String[] ALL_STAGES = {"DNF", "CNF", "BDD"};
 
     /**
      * Constructor
@@ -48,14 +141,28 @@ public class Agent {
         this.type = type;
         this.verbose = verbose;
         this.game = game;
-        this.boardLength = this.game.getBoard().length;
-        this.board = new char[boardLength][boardLength];
+        this.width = this.game.getWidth();
+        this.height = this.game.getHeight();
+        this.topology = this.game.getTopology();
+        this.board = new char[height][width];
         this.cells = new ArrayList<>();
-        this.unprovedCells = new ArrayList<>();
-        this.provedCells = new ArrayList<>();
-        this.tornadoCells = new ArrayList<>();
-        this.uncoveredCells = new ArrayList<>();
+        this.unprovedCells = new ArrayList<>(width * height);
+        this.provedCells = new ArrayList<>(width * height);
+        this.examined = new boolean[width * height];
+        this.tornadoCells = new ArrayList<>(width * height);
+        this.uncoveredCells = new ArrayList<>(width * height);
+        this.frontierNext = new int[width * height];
+        this.frontierPrev = new int[width * height];
+        this.inFrontier = new boolean[width * height];
+        this.frontierHead = -1;
+        this.frontierTail = -1;
+        this.nUnknowns = new int[width * height];
+        this.nDangers = new int[width * height];
+        for (int i = 0; i < nUnknowns.length; i++) {
+            nUnknowns[i] = topology.getEnd(i) - topology.getStart(i);
+        }
         this.cellsWithFreeNeighbours = 0;
+        this.deductions = new HashMap<>();
         initBoard();
         initCells();
         proveHintCells();
@@ -95,8 +202,8 @@ public class Agent {
      */
     public void initBoard() {
         // Set '?' at first
-        for (int i = 0; i < boardLength; i++) {
-            for (int j = 0; j < boardLength; j++) {
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < height; j++) {
                 board[j][i] = '?';
             }
         }
@@ -109,8 +216,8 @@ public class Agent {
      * Initialises the cells and unprovedCells
      */
     public void initCells() {
-        for (int i = 0; i < boardLength; i++) {
-            for (int j = 0; j < boardLength; j++) {
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
                 Cell cell = new Cell(j, i, '?');
                 cells.add(cell);
                 unprovedCells.add(cell);
@@ -125,7 +232,7 @@ public class Agent {
         Cell cell = getCell(0, 0);
         proveCell(cell);
         if (!this.type.equals("P1")) {
-            cell = getCell(boardLength / 2, boardLength / 2);
+            cell = getCell(width / 2, height / 2);
             proveCell(cell);
         }
     }
@@ -154,12 +261,22 @@ public class Agent {
      * @return cell with coordinates x and y
      */
     public Cell getCell(int x, int y) {
-        for (Cell cell : cells) {
-            if (cell.x == x && cell.y == y) {
-                return cell;
-            }
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return null;
         }
-        return null;
+        // The cells are stored row by row
+        return cells.get(y * width + x);
+    }
+
+    /**
+     * Return the name of the variable which is true if the cell is a tornado
+     *
+     * @param cell
+     * @return the variable name
+     */
+    public static String getVariable(Cell cell) {
+        // The separator keeps the names of wide boards unique, e.g. T1_11 and T11_1
+        return "T" + cell.x + "_" + cell.y;
     }
 
     /**
@@ -169,13 +286,27 @@ public class Agent {
      */
     public void proveCell(Cell cell) {
         Cell targetCell = getCell(cell.x, cell.y);
+        boolean wasUnknown = targetCell.getHint() == '?';
         Cell uncoveredCell = game.uncoverCell(cell.x, cell.y, this.type);
         cell.setHint(uncoveredCell.getHint(), this.type);
         targetCell.setHint(uncoveredCell.getHint(), this.type);
         unprovedCells.remove(cell);
         provedCells.add(cell);
+        examined[topology.index(cell.x, cell.y)] = true;
         uncoveredCells.add(cell);
         board[cell.y][cell.x] = cell.getHint();
+        moves++;
+        if (wasUnknown) {
+            updateCounters(cell, false);
+            if (kernel != null) {
+                kernel.setHint(topology.index(cell.x, cell.y), cell.getHint());
+            }
+        }
+        if (getTheNumberOfUnknown(cell) > 0) {
+            addToFrontier(topology.index(cell.x, cell.y));
+        }
+        updateFrontier(cell);
+        logMove(cell, false);
         if (cell.getHint() == '0') {
             cellsWithFreeNeighbours++;
         }
@@ -188,76 +319,286 @@ public class Agent {
      */
     public void setDanger(Cell cell) {
         Cell targetCell = getCell(cell.x, cell.y);
+        boolean wasUnknown = targetCell.getHint() == '?';
         cell.setHint('*', this.type);
         targetCell.setHint('*', this.type);
         tornadoCells.add(cell);
         provedCells.add(cell);
+        examined[topology.index(cell.x, cell.y)] = true;
         unprovedCells.remove(cell);
         board[cell.y][cell.x] = cell.getHint();
+        moves++;
+        if (wasUnknown) {
+            updateCounters(cell, true);
+            if (kernel != null) {
+                kernel.setHint(topology.index(cell.x, cell.y), '*');
+            }
+        }
+        updateFrontier(cell);
+        logMove(cell, true);
     }
 
     /**
-     * Method which returns whether a Cell object has been examined before
+     * Drop the neighbours of a newly proved cell from the frontier once all their neighbours are proved
      *
-     * @param adjacentCell
-     * @return
+     * @param cell which has just been proved
      */
-    public boolean hasBeenExamined(Cell adjacentCell) {
-        for (Cell cell : provedCells) {
-            if (cell.x == adjacentCell.x && cell.y == adjacentCell.y) {
-                return true;
+    public void updateFrontier(Cell cell) {
+        int index = topology.index(cell.x, cell.y);
+        int[] adjacency = topology.getAdjacency();
+        for (int i = topology.getStart(index); i < topology.getEnd(index); i++) {
+            if (nUnknowns[adjacency[i]] == 0) {
+                removeFromFrontier(adjacency[i]);
             }
         }
-        return false;
     }
 
     /**
-     * Return neighbouring cells
+     * Append a cell to the frontier unless it is already in it
      *
-     * @param cell
-     * @return neighbouring cells
+     * @param index of the cell
      */
-    public ArrayList<Cell> getNeighbours(Cell cell) {
+    private void addToFrontier(int index) {
+        if (inFrontier[index]) {
+            return;
+        }
+        inFrontier[index] = true;
+        frontierPrev[index] = frontierTail;
+        frontierNext[index] = -1;
+        if (frontierTail < 0) {
+            frontierHead = index;
+        } else {
+            frontierNext[frontierTail] = index;
+        }
+        frontierTail = index;
+    }
+
+    /**
+     * Remove a cell from the frontier if it is in it
+     *
+     * @param index of the cell
+     */
+    private void removeFromFrontier(int index) {
+        if (!inFrontier[index]) {
+            return;
+        }
+        inFrontier[index] = false;
+        if (frontierPrev[index] < 0) {
+            frontierHead = frontierNext[index];
+        } else {
+            frontierNext[frontierPrev[index]] = frontierNext[index];
+        }
+        if (frontierNext[index] < 0) {
+            frontierTail = frontierPrev[index];
+        } else {
+            frontierPrev[frontierNext[index]] = frontierPrev[index];
+        }
+    }
 
-        ArrayList<Cell> neighbours = new ArrayList<>();
+    /**
+     * Return the frontier
+     *
+     * @return the uncovered cells which still have unproved neighbours, in the order they were uncovered
+     */
+    public ArrayList<Cell> getFrontier() {
+        ArrayList<Cell> frontier = new ArrayList<>();
+        for (int index = frontierHead; index >= 0; index = frontierNext[index]) {
+            frontier.add(cells.get(index));
+        }
+        return frontier;
+    }
 
-        if (cell.x > 0 && cell.y > 0) {
-            Cell neighbourCell = getCell(cell.x - 1, cell.y - 1);
-            if (neighbourCell != null) {
-                neighbours.add(neighbourCell);
+    /**
+     * Update the counters of the neighbours of a cell which has just been proved
+     *
+     * @param cell which was unproved
+     * @param danger true if the cell was flagged
+     */
+    private void updateCounters(Cell cell, boolean danger) {
+        int index = topology.index(cell.x, cell.y);
+        int[] adjacency = topology.getAdjacency();
+        for (int i = topology.getStart(index); i < topology.getEnd(index); i++) {
+            nUnknowns[adjacency[i]]--;
+            if (danger) {
+                nDangers[adjacency[i]]++;
             }
         }
-        if (cell.x > 0) {
-            Cell neighbourCell = getCell(cell.x - 1, cell.y);
-            if (neighbourCell != null) {
-                neighbours.add(neighbourCell);
-            }
+    }
+
+    /**
+     * Return the unproved cells which a SAT probe can prove, in board order.
+     * Without the tornado count only the neighbours of the frontier occur in the KB,
+     * and any other cell can always be a tornado.
+     *
+     * @return the cells to probe
+     */
+    public ArrayList<Cell> getCandidates() {
+        if (useTornadoCount) {
+            return unprovedCells;
         }
-        if (cell.y > 0) {
-            Cell neighbourCell = getCell(cell.x, cell.y - 1);
-            if (neighbourCell != null) {
-                neighbours.add(neighbourCell);
+        return getUnknowns(getFrontier());
+    }
+
+    /**
+     * Split the frontier into components which share no unproved cells.
+     * The KB is the conjunction of the KBs of its components, which can be solved on their own.
+     *
+     * @return the frontier cells of each component, in frontier order
+     */
+    public ArrayList<ArrayList<Cell>> getComponents() {
+        ArrayList<Cell> active = getFrontier();
+        // Union-find over the positions in active
+        int[] parent = new int[active.size()];
+        HashMap<Cell, Integer> owners = new HashMap<>();
+        for (int i = 0; i < active.size(); i++) {
+            parent[i] = i;
+            for (Cell neighbour : getNeighbours(active.get(i))) {
+                if (neighbour.getHint() != '?') {
+                    continue;
+                }
+                Integer owner = owners.putIfAbsent(neighbour, i);
+                if (owner != null) {
+                    parent[find(parent, owner)] = find(parent, i);
+                }
             }
         }
-        if (cell.x < boardLength - 1 && cell.y < boardLength - 1) {
-            Cell neighbourCell = getCell(cell.x + 1, cell.y + 1);
-            if (neighbourCell != null) {
-                neighbours.add(neighbourCell);
+        HashMap<Integer, ArrayList<Cell>> roots = new HashMap<>();
+        ArrayList<ArrayList<Cell>> components = new ArrayList<>();
+        for (int i = 0; i < active.size(); i++) {
+            ArrayList<Cell> component = roots.get(find(parent, i));
+            if (component == null) {
+                component = new ArrayList<>();
+                roots.put(find(parent, i), component);
+                components.add(component);
             }
+            component.add(active.get(i));
         }
-        if (cell.x < boardLength - 1) {
-            Cell neighbourCell = getCell(cell.x + 1, cell.y);
-            if (neighbourCell != null) {
-                neighbours.add(neighbourCell);
-            }
+        return components;
+    }
+
+    /**
+     * Find the root of a union-find tree, halving the path on the way
+     *
+     * @param parent
+     * @param i
+     * @return the root
+     */
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
         }
-        if (cell.y < boardLength - 1) {
-            Cell neighbourCell = getCell(cell.x, cell.y + 1);
-            if (neighbourCell != null) {
-                neighbours.add(neighbourCell);
+        return i;
+    }
+
+    /**
+     * Return the unproved neighbours of a component, in board order
+     *
+     * @param component frontier cells
+     * @return the unproved cells
+     */
+    public ArrayList<Cell> getUnknowns(ArrayList<Cell> component) {
+        HashSet<Cell> unknowns = new HashSet<>();
+        for (Cell cell : component) {
+            for (Cell neighbour : getNeighbours(cell)) {
+                if (neighbour.getHint() == '?') {
+                    unknowns.add(neighbour);
+                }
             }
         }
+        ArrayList<Cell> sorted = new ArrayList<>(unknowns);
+        sorted.sort((a, b) -> Integer.compare(a.y * width + a.x, b.y * width + b.x));
+        return sorted;
+    }
+
+    /**
+     * Count a deduction made by the given strategy
+     *
+     * @param strategy which made the deduction
+     */
+    public void addDeduction(String strategy) {
+        this.strategy = strategy;
+        int[] count = deductions.get(strategy);
+        if (count == null) {
+            count = new int[1];
+            deductions.put(strategy, count);
+        }
+        count[0]++;
+        if (events != null) {
+            events.publish(GameEvent.deduction(strategy));
+        }
+    }
+
+    /**
+     * Append the move to the move log and the event stream, if there are any
+     *
+     * @param cell which was uncovered or flagged
+     * @param flag true if the cell was flagged
+     */
+    public void logMove(Cell cell, boolean flag) {
+        if (moveLog == null && events == null) {
+            return;
+        }
+        long moveSolverNanos = solverNanos - loggedSolverNanos;
+        loggedSolverNanos = solverNanos;
+        if (events != null) {
+            events.publish(GameEvent.move(cell, flag, strategy, moveSolverNanos));
+        }
+        if (moveLog == null) {
+            return;
+        }
+        try {
+            moveLog.record(cell.x, cell.y, flag, strategy, moveSolverNanos);
+        } catch (IOException e) {
+            System.out.println("IOException: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Apply a move read from a move log
+     *
+     * @param index of the cell, y * width + x
+     * @param flag true if the cell was flagged
+     * @param strategy which deduced the move
+     */
+    public void replayMove(int index, boolean flag, String strategy) {
+        Cell cell = cells.get(index);
+        this.strategy = strategy;
+        if (strategy.equals("RP")) {
+            // Draw as RP did, so that a seeded agent probes the same cells when the game is played on
+            random.nextInt(unprovedCells.size());
+        }
+        if (flag) {
+            setDanger(cell);
+        } else {
+            proveCell(cell);
+        }
+    }
+
+    /**
+     * Method which returns whether a Cell object has been examined before
+     *
+     * @param adjacentCell
+     * @return
+     */
+    public boolean hasBeenExamined(Cell adjacentCell) {
+        return examined[topology.index(adjacentCell.x, adjacentCell.y)];
+    }
+
+    /**
+     * Return neighbouring cells
+     *
+     * @param cell
+     * @return neighbouring cells
+     */
+    public ArrayList<Cell> getNeighbours(Cell cell) {
 
+        int index = topology.index(cell.x, cell.y);
+        int[] adjacency = topology.getAdjacency();
+        ArrayList<Cell> neighbours = new ArrayList<>(topology.getEnd(index) - topology.getStart(index));
+        for (int i = topology.getStart(index); i < topology.getEnd(index); i++) {
+            neighbours.add(cells.get(adjacency[i]));
+        }
         return neighbours;
     }
 
@@ -267,49 +608,24 @@ public class Agent {
     public void uncoverNeighbours() {
         while (cellsWithFreeNeighbours != 0 && !game.isGameWon()) {
             ArrayList<Cell> adjacentCells = new ArrayList<>();
-            for (Cell cell : provedCells) {
+            int nProved = provedCells.size();
+            for (; nFreeScanned < nProved; nFreeScanned++) {
+                Cell cell = provedCells.get(nFreeScanned);
                 if (cell.getHint() == '0') {
-                    if (cell.x > 0 && cell.y > 0) {
-                        Cell adjacentCell = findUnprovedCell(cell.x - 1, cell.y - 1);
-                        if (adjacentCell != null) {
-                            adjacentCells.add(adjacentCell);
-                        }
-                    }
-                    if (cell.x > 0) {
-                        Cell adjacentCell = findUnprovedCell(cell.x - 1, cell.y);
-                        if (adjacentCell != null) {
-                            adjacentCells.add(adjacentCell);
-                        }
-                    }
-                    if (cell.y > 0) {
-                        Cell adjacentCell = findUnprovedCell(cell.x, cell.y - 1);
-                        if (adjacentCell != null) {
-                            adjacentCells.add(adjacentCell);
-                        }
-                    }
-                    if (cell.x < boardLength - 1 && cell.y < boardLength - 1) {
-                        Cell adjacentCell = findUnprovedCell(cell.x + 1, cell.y + 1);
-                        if (adjacentCell != null) {
-                            adjacentCells.add(adjacentCell);
-                        }
-                    }
-                    if (cell.x < boardLength - 1) {
-                        Cell adjacentCell = findUnprovedCell(cell.x + 1, cell.y);
-                        if (adjacentCell != null) {
-                            adjacentCells.add(adjacentCell);
-                        }
-                    }
-                    if (cell.y < boardLength - 1) {
-                        Cell adjacentCell = findUnprovedCell(cell.x, cell.y + 1);
-                        if (adjacentCell != null) {
+                    int index = topology.index(cell.x, cell.y);
+                    int[] adjacency = topology.getAdjacency();
+                    for (int i = topology.getStart(index); i < topology.getEnd(index); i++) {
+                        Cell adjacentCell = cells.get(adjacency[i]);
+                        // Unproved cells are the only ones whose hint is still unknown
+                        if (adjacentCell.getHint() == '?') {
                             adjacentCells.add(adjacentCell);
                         }
                     }
-
                 }
             }
             for (Cell adjacentCell : adjacentCells) {
                 if (!hasBeenExamined(adjacentCell)) {
+                    addDeduction("FREE");
                     proveCell(adjacentCell);
                 }
             }
@@ -324,14 +640,7 @@ public class Agent {
      * @return the number of dangered around the passed cell
      */
     public int getTheNumberOfDangers(Cell cell) {
-        int nDangers = 0;
-        ArrayList<Cell> neighbours = getNeighbours(cell);
-        for (Cell neighbour : neighbours) {
-            if (neighbour.getHint() == '*') {
-                nDangers++;
-            }
-        }
-        return nDangers;
+        return nDangers[topology.index(cell.x, cell.y)];
     }
 
     /**
@@ -341,14 +650,7 @@ public class Agent {
      * @return the number of unproved cells
      */
     public int getTheNumberOfUnknown(Cell cell) {
-        int nUnknowns = 0;
-        ArrayList<Cell> neighbours = getNeighbours(cell);
-        for (Cell neighbour : neighbours) {
-            if (neighbour.getHint() == '?') {
-                nUnknowns++;
-            }
-        }
-        return nUnknowns;
+        return nUnknowns[topology.index(cell.x, cell.y)];
     }
 
     /**
@@ -358,10 +660,13 @@ public class Agent {
      * @return true if the cell is in an AFN situation
      */
     public boolean isAFN(Cell cell) {
-        ArrayList<Cell> neighbours = getNeighbours(cell);
-        for (Cell neighbour : neighbours) {
-            if (neighbour.getHint() != '?' && neighbour.getHint() != '*') {
-                if (getTheNumberOfDangers(neighbour) == Character.getNumericValue(neighbour.getHint())) {
+        int index = topology.index(cell.x, cell.y);
+        int[] adjacency = topology.getAdjacency();
+        for (int i = topology.getStart(index); i < topology.getEnd(index); i++) {
+            int neighbour = adjacency[i];
+            char hint = cells.get(neighbour).getHint();
+            if (hint != '?' && hint != '*') {
+                if (nDangers[neighbour] == Character.getNumericValue(hint)) {
                     return true;
                 }
             }
@@ -376,10 +681,13 @@ public class Agent {
      * @return true if the cells is in an AMN situation
      */
     public boolean isAMN(Cell cell) {
-        ArrayList<Cell> neighbours = getNeighbours(cell);
-        for (Cell neighbour : neighbours) {
-            if (neighbour.getHint() != '?' && neighbour.getHint() != '*') {
-                if (getTheNumberOfUnknown(neighbour) == (Character.getNumericValue(neighbour.getHint() - getTheNumberOfDangers(neighbour)))) {
+        int index = topology.index(cell.x, cell.y);
+        int[] adjacency = topology.getAdjacency();
+        for (int i = topology.getStart(index); i < topology.getEnd(index); i++) {
+            int neighbour = adjacency[i];
+            char hint = cells.get(neighbour).getHint();
+            if (hint != '?' && hint != '*') {
+                if (nUnknowns[neighbour] == (Character.getNumericValue(hint - nDangers[neighbour]))) {
                     return true;
                 }
             }
@@ -387,27 +695,62 @@ public class Agent {
         return false;
     }
 
+    /**
+     * Return the first unproved cell which is in an AFN or AMN situation.
+     * The scan reads the neighbour indexes and counters only, so it does not allocate.
+     *
+     * @return the cell, or null if there is none
+     */
+    public Cell findSPSCell() {
+        for (int i = 0; i < unprovedCells.size(); i++) {
+            Cell cell = unprovedCells.get(i);
+            if (isAFN(cell) || isAMN(cell)) {
+                return cell;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the next unproved cell in an AFN or AMN situation from the sweeps of the kernel.
+     * One sweep finds every such cell at once, and they are used up before the next sweep.
+     * Proving a cell never undoes the situation of another, so a cell found by a sweep stays
+     * a sound move; the check only skips the cells which have been proved since.
+     *
+     * @return the cell, or null if a fresh sweep finds none
+     */
+    public Cell findSPSCellWithKernel() {
+        while (true) {
+            while (kernelNext < kernelFound) {
+                Cell cell = cells.get(kernel.getFound(kernelNext++));
+                if (cell.getHint() == '?' && (isAFN(cell) || isAMN(cell))) {
+                    return cell;
+                }
+            }
+            kernelFound = kernel.sweep();
+            kernelNext = 0;
+            if (kernelFound == 0) {
+                return null;
+            }
+        }
+    }
+
     /**
      * Method for single point strategy
      */
     public void SPS() {
         // Check AFN or AMN
-        boolean isAFNorAMN = false;
-        for (Cell cell : unprovedCells) {
-            if (isAFN(cell)) {
-                counter++;
-                isAFNorAMN = true;
-                proveCell(cell);
-                break;
-            } else if (isAMN(cell)) {
-                counter++;
-                isAFNorAMN = true;
-                setDanger(cell);
-                break;
-            }
-        }
-        if (!isAFNorAMN) {
+        Cell cell = kernel != null ? findSPSCellWithKernel() : findSPSCell();
+        if (cell == null) {
             game.setGameOver(true);
+            return;
+        }
+        counter++;
+        addDeduction("SPS");
+        if (isAFN(cell)) {
+            proveCell(cell);
+        } else {
+            setDanger(cell);
         }
     }
 
@@ -436,10 +779,10 @@ public class Agent {
         // Generate the literals
         ArrayList<String> literals = new ArrayList<>();
         for (Cell unknown: unknowns) {
-            literals.add("T" + unknown.x + unknown.y);
+            literals.add(getVariable(unknown));
         }
         for (Cell dangerousNeighbour : dangerousNeighbours) {
-            dangerousLiterals.add("T" + dangerousNeighbour.x + dangerousNeighbour.y);
+            dangerousLiterals.add(getVariable(dangerousNeighbour));
         }
 
         int nTornadoes = Character.getNumericValue(cell.getHint());
@@ -449,7 +792,7 @@ public class Agent {
         // Get permutations
         ArrayList<ArrayList<String>> permutedClauses = getPermutations(literals);
         for (ArrayList<String> permutedClause : permutedClauses) {
-            for (int j = 0; j < nUnknowns - nTornadoes - nDangers; j++) {
+            for (int j = 0; j < nUnknowns - (nTornadoes - nDangers); j++) {
                 String clause = permutedClause.get(j);
                 permutedClause.remove(clause);
                 clause = "~" + clause;
@@ -483,15 +826,14 @@ public class Agent {
     public String buildKB() {
 
         StringBuilder builder = new StringBuilder();
-        for (Cell cell: uncoveredCells) {
-            if (getTheNumberOfUnknown(cell) > 0) {
-                String clause = buildClause(cell);
-                if (clause != "") {
-                    builder.append("(");
-                    builder.append(clause);
-                    builder.append(")");
-                    builder.append("&");
-                }
+        // Only the frontier still constrains unproved cells
+        for (Cell cell: getFrontier()) {
+            String clause = buildClause(cell);
+            if (clause != "") {
+                builder.append("(");
+                builder.append(clause);
+                builder.append(")");
+                builder.append("&");
             }
         }
         if (builder.length() > 0) {
@@ -502,122 +844,1154 @@ public class Agent {
     }
 
     /**
-     * Method for SAT with DNF encoding.
+     * Build the constraint that the unproved cells hold exactly the tornadoes which have not been flagged.
+     * LogicNG encodes it with its cardinality encoders instead of the permutations used for the hints.
+     *
+     * @return a cardinality constraint over all unproved cells
      */
-    public void SATWithDNF() {
+    public Formula buildTornadoCount() {
+        ArrayList<Variable> variables = new ArrayList<>();
+        for (Cell cell : unprovedCells) {
+            variables.add(f.variable(getVariable(cell)));
+        }
+        return f.cc(CType.EQ, game.getNumberOfTornadoes() - tornadoCells.size(), variables);
+    }
 
-        Cell targetCell = null;
-        boolean isSatisfiable = false;
-        try {
-            // Build KB based on the uncoveredCells
-            String kbString = buildKB();
-            // Convert the KB into a logical formula
-            for (Cell cell : unprovedCells) {
-                String clause = "&T" + cell.x + cell.y;
-                Formula formula = p.parse(kbString+clause);
-                // Convert a logical formula to a CNF encoding
-                SATSolver miniSat= MiniSat.miniSat(f);
-                miniSat.add(formula);
-                Tristate result = miniSat.sat();
-                if (result.toString().equals("FALSE")) {
-                    targetCell = cell;
-                    isSatisfiable = true;
-                    break;
+    /**
+     * Find a cell which cannot be a tornado, using the DNF encoding and MiniSat
+     *
+     * @return the safe cell, or null if there is none or the budget has run out
+     * @throws ParserException
+     */
+    public Cell findSafeCellWithDNF() throws ParserException {
+        solverCalls++;
+        // The solver budget is not shared between threads, so a budgeted move stays on this one
+        if (forkComponents && budget == null && !useTornadoCount && ForkJoinTask.inForkJoinPool()) {
+            return findSafeCellWithComponentProbes();
+        }
+        // Build KB based on the uncoveredCells
+        String kbString = buildKB();
+        Formula count = useTornadoCount ? buildTornadoCount() : null;
+        // Convert the KB into a logical formula once, and probe each cell as an assumption
+        SATSolver miniSat = MiniSat.miniSat(f);
+        miniSat.add(p.parse(kbString.isEmpty() ? "$true" : kbString));
+        if (count != null) {
+            miniSat.add(count);
+        }
+        for (Cell cell : getCandidates()) {
+            if (budget != null && budget.isExhausted()) {
+                budgetHit = true;
+                return null;
+            }
+            Literal literal = f.literal(getVariable(cell), true);
+            Tristate result = budget == null ? miniSat.sat(literal) : miniSat.sat(budget, literal);
+            if (result == Tristate.UNDEF) {
+                budgetHit = true;
+                return null;
+            }
+            if (result == Tristate.FALSE) {
+                return cell;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find a cell which cannot be a tornado by probing every component of the frontier
+     * as its own fork/join task, so that idle workers of the pool can steal them.
+     * The first safe cell in board order is returned, as by the sequential probes.
+     *
+     * @return the safe cell, or null if there is none
+     * @throws ParserException
+     */
+    public Cell findSafeCellWithComponentProbes() throws ParserException {
+        ArrayList<ComponentProbe> probes = new ArrayList<>();
+        for (ArrayList<Cell> component : getComponents()) {
+            probes.add(new ComponentProbe(this, component, getUnknowns(component)));
+        }
+        ForkJoinTask.invokeAll(probes);
+        Cell first = null;
+        for (ComponentProbe probe : probes) {
+            Cell cell;
+            try {
+                cell = probe.join();
+            } catch (IllegalStateException e) {
+                // join may wrap the exception of another thread once more
+                Throwable cause = e;
+                while (cause != null && !(cause instanceof ParserException)) {
+                    cause = cause.getCause();
                 }
+                if (cause == null) {
+                    throw e;
+                }
+                throw (ParserException) cause;
             }
-            if (isSatisfiable) {
-                proveCell(targetCell);
-            } else {
-                game.setSatisfiable(false);
+            if (cell != null && (first == null || topology.index(cell.x, cell.y) < topology.index(first.x, first.y))) {
+                first = cell;
             }
-        } catch (ParserException e) {
-            System.out.println("ParserException: " + e.getMessage());
         }
+        return first;
     }
 
     /**
-     * Method for SAT with CNF encoding.
+     * Method for SAT with DNF encoding.
      */
-    public void SATWithCNF() {
+    public void SATWithDNF() {
 
-        ISolver solver;
         Cell targetCell = null;
         boolean isSatisfiable = false;
         try {
-            // Build KB based on the uncoveredCells
-            String kbString = buildKB();
-            DIMACS dimacs = new DIMACS();
-            // Convert the KB into a logical formula
-            Formula formula = p.parse(kbString);
-            // Convert a logical formula to a CNF encoding
-            int[][] dimacsClauses = dimacs.buildDIMACS(formula);
-            solver = SolverFactory.newDefault();
-            solver.newVar(1000);
-            solver.setExpectedNumberOfClauses(50000);
-            for (int j = 0; j < dimacsClauses.length; j++) {
-                VecInt vecInt = new VecInt(dimacsClauses[j]);
-                solver.addClause(vecInt);
-            }
-            // Check the satisfiability of including a tornado
-            for (Cell cell : unprovedCells) {
-                String clause = "T" + cell.x + cell.y;
-                if (dimacs.getLiterals().containsKey(clause)) {
-                    int literal = dimacs.getLiterals().get(clause);
-                    int[] literals = new int[]{literal};
-                    if (!solver.isSatisfiable(new VecInt(literals))) {
-                        targetCell = cell;
-                        isSatisfiable = true;
-                        break;
-                    }
-                }
-            }
+            long start = System.nanoTime();
+            targetCell = findSafeCellForDNF();
+            isSatisfiable = targetCell != null;
+            solverNanos += System.nanoTime() - start;
             if (isSatisfiable) {
-                counter++;
+                addDeduction("SAT");
                 proveCell(targetCell);
-            } else {
+            } else if (!budgetHit || !fallBack(false)) {
                 game.setSatisfiable(false);
             }
         } catch (ParserException e) {
             System.out.println("ParserException: " + e.getMessage());
-        } catch (ContradictionException e) {
-            System.out.println("ContradictionException: " + e.getMessage());
-        } catch (TimeoutException e) {
-            System.out.println("TimeoutException: " + e.getMessage());
+        } catch (InterruptedException e) {
+            System.out.println("InterruptedException: " + e.getMessage());
         }
     }
 
     /**
-     * Play game based on the agent type
+     * Bring the game-long SAT4J solver up to date with the agent's board.
+     * Cells uncovered since the last call add their clause, and cells proved since then add a fact.
+     *
+     * @throws ParserException
+     * @throws ContradictionException
      */
-    public void playGame() {
-        switch (type) {
-            case "P1":
-                playBasic();
-                break;
-            case "P2":
-                playBeginner();
-                break;
-            case "P3":
-                playIntermediateDNF();
-                break;
-            case "P4":
-                playIntermediateCNF();
-                break;
-            case "P5":
-                playRP();
-                break;
-            case "P6":
-                playRPSPS();
-                break;
-            case "P7":
-                playRPSATSDNF();
-                break;
-            case "P8":
-                playRPSATSCNF();
-                break;
+    public void updateSat4j() throws ParserException, ContradictionException {
+        if (sat4j == null) {
+            sat4j = new Sat4jBackend(satConfig);
+            nEncodedFacts = 0;
+            encodedClauses = new HashSet<>();
+            if (useTornadoCount) {
+                // Over every cell, so that it stays valid while the facts are added
+                ArrayList<String> variables = new ArrayList<>();
+                for (Cell cell : cells) {
+                    variables.add(getVariable(cell));
+                }
+                sat4j.addExactly(variables, game.getNumberOfTornadoes());
+            }
+        }
+        for (; nEncodedFacts < provedCells.size(); nEncodedFacts++) {
+            Cell cell = provedCells.get(nEncodedFacts);
+            sat4j.addFact(getVariable(cell), cell.getHint() == '*');
+        }
+        for (Cell cell : getFrontier()) {
+            if (!encodedClauses.contains(cell)) {
+                encodedClauses.add(cell);
+                sat4j.addFormula(p.parse(buildClause(cell)));
+            }
         }
     }
 
+    /**
+     * Find a cell which cannot be a tornado, using the game-long SAT4J solver
+     *
+     * @return the safe cell, or null if there is none
+     * @throws ParserException
+     * @throws ContradictionException
+     * @throws TimeoutException
+     */
+    public Cell findSafeCellWithCNF() throws ParserException, ContradictionException, TimeoutException {
+        solverCalls++;
+        updateSat4j();
+        ArrayList<Cell> candidates = getCandidates();
+        // Failed literals of unit propagation are settled without the solver
+        for (Cell cell : candidates) {
+            Integer literal = sat4j.getLiteral(getVariable(cell));
+            if (literal != null && sat4j.isFailedLiteral(literal)) {
+                return cell;
+            }
+        }
+        // Literals which are true in a model found by an earlier probe can be tornadoes
+        HashSet<Integer> possible = new HashSet<>();
+        // Check the satisfiability of including a tornado
+        for (Cell cell : candidates) {
+            Integer literal = sat4j.getLiteral(getVariable(cell));
+            if (literal == null || possible.contains(literal)) {
+                continue;
+            }
+            if (budget == null) {
+                if (!sat4j.isSatisfiable(literal)) {
+                    return cell;
+                }
+                addModel(possible);
+                continue;
+            }
+            if (budget.isExhausted()) {
+                budgetHit = true;
+                return null;
+            }
+            budget.configure(sat4j.getSolver());
+            long conflicts = MoveBudget.conflictsOf(sat4j.getSolver());
+            try {
+                if (!sat4j.isSatisfiable(literal)) {
+                    return cell;
+                }
+                addModel(possible);
+            } catch (TimeoutException e) {
+                budget.abort();
+                budgetHit = true;
+                return null;
+            } finally {
+                budget.account(conflicts, MoveBudget.conflictsOf(sat4j.getSolver()));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Add the true literals of the last model of the game-long SAT4J solver
+     *
+     * @param possible literals which can be true
+     */
+    private void addModel(HashSet<Integer> possible) {
+        for (int literal : sat4j.getModel()) {
+            if (literal > 0) {
+                possible.add(literal);
+            }
+        }
+    }
+
+    /**
+     * Find a cell which cannot be a tornado by racing the backends of the portfolio
+     *
+     * @return the safe cell, or null if there is none or the budget has run out
+     * @throws InterruptedException
+     */
+    public Cell findSafeCellWithPortfolio() throws InterruptedException {
+        solverCalls++;
+        String kbString = buildKB();
+        ArrayList<Cell> candidateCells = getCandidates();
+        ArrayList<String> candidates = new ArrayList<>();
+        for (Cell cell : candidateCells) {
+            candidates.add(getVariable(cell));
+        }
+        try {
+            int count = useTornadoCount ? game.getNumberOfTornadoes() - tornadoCells.size() : -1;
+            int index = portfolio.findSafeCandidate(kbString, candidates, count, width + "x" + height,
+                    budget == null ? 0 : budget.getTimeMs());
+            return index < 0 ? null : candidateCells.get(index);
+        } catch (java.util.concurrent.TimeoutException e) {
+            budgetHit = true;
+        } catch (ExecutionException e) {
+            System.out.println("ExecutionException: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Find a cell which cannot be a tornado from the BDDs of the frontier components,
+     * and keep the exact chance of a tornado in every frontier cell for guessing
+     *
+     * @return the safe cell, or null if there is none or the budget has run out
+     * @throws ParserException
+     */
+    public Cell findSafeCellWithCompiler() throws ParserException {
+        solverCalls++;
+        compiler.startMove();
+        probabilities = new HashMap<>();
+        for (ArrayList<Cell> component : getComponents()) {
+            if (budget != null && budget.isExhausted()) {
+                budgetHit = true;
+                return null;
+            }
+            // The unknown neighbours of a cell only ever shrink, so the hint and the counts decide its clause
+            StringBuilder key = new StringBuilder();
+            for (Cell cell : component) {
+                key.append(getVariable(cell)).append(cell.getHint()).append(getTheNumberOfDangers(cell))
+                        .append('/').append(getTheNumberOfUnknown(cell)).append(';');
+            }
+            ArrayList<String> variables = new ArrayList<>();
+            for (Cell cell : getUnknowns(component)) {
+                variables.add(getVariable(cell));
+            }
+            probabilities.putAll(compiler.getProbabilities(key.toString(), () -> {
+                StringBuilder builder = new StringBuilder();
+                for (Cell cell : component) {
+                    String clause = buildClause(cell);
+                    if (clause != "") {
+                        builder.append("(").append(clause).append(")&");
+                    }
+                }
+                if (builder.length() == 0) {
+                    return "$true";
+                }
+                builder.deleteCharAt(builder.length() - 1);
+                return builder.toString();
+            }, variables));
+        }
+        // Pick the first safe cell in board order, as the SAT probes do
+        for (Cell cell : getCandidates()) {
+            Double probability = probabilities.get(getVariable(cell));
+            if (probability != null && probability == 0) {
+                return cell;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find a cell which cannot be a tornado with the DNF strategies' solver
+     *
+     * @return the safe cell, or null if there is none or the budget has run out
+     * @throws ParserException
+     * @throws InterruptedException
+     */
+    public Cell findSafeCellForDNF() throws ParserException, InterruptedException {
+        recycleFactory();
+        // One budget for the whole move, which every stage below spends from
+        startBudget();
+        ArrayList<ArrayList<Cell>> components = getPatternComponents();
+        Cell cell = findSafeCellWithPatterns(components);
+        if (cell != null || patternsSettled || budgetHit) {
+            return cell;
+        }
+        if (compiler != null) {
+            cell = findSafeCellWithCompiler();
+            // The components are exact on their own, but the tornado count couples them
+            if (cell != null || budgetHit || !useTornadoCount) {
+                return cell;
+            }
+        }
+        return portfolio != null ? findSafeCellWithPortfolio() : findSafeCellWithDNF();
+    }
+
+    /**
+     * Find a cell which cannot be a tornado with the CNF strategies' solver
+     *
+     * @return the safe cell, or null if there is none or the budget has run out
+     * @throws ParserException
+     * @throws ContradictionException
+     * @throws TimeoutException
+     * @throws InterruptedException
+     */
+    public Cell findSafeCellForCNF() throws ParserException, ContradictionException, TimeoutException, InterruptedException {
+        recycleFactory();
+        // One budget for the whole move, which every stage below spends from
+        startBudget();
+        ArrayList<ArrayList<Cell>> components = getPatternComponents();
+        Cell cell = findSafeCellWithPatterns(components);
+        if (cell != null || patternsSettled || budgetHit) {
+            return cell;
+        }
+        if (compiler != null) {
+            cell = findSafeCellWithCompiler();
+            if (cell != null || budgetHit || !useTornadoCount) {
+                return cell;
+            }
+        }
+        return portfolio != null ? findSafeCellWithPortfolio() : findSafeCellWithCNF();
+    }
+
+    /**
+     * Return the components of the frontier if the pattern store can answer this move.
+     * The tornado count couples the components, and on a wrapping board a translated
+     * pattern may meet itself around the edge, so the store is not used for either.
+     *
+     * @return the components, or null if the store is not used
+     */
+    public ArrayList<ArrayList<Cell>> getPatternComponents() {
+        if (!usesPatterns()) {
+            return null;
+        }
+        return getComponents();
+    }
+
+    /**
+     * Check whether the pattern store can answer the moves of this game
+     *
+     * @return true if there is a store, and neither the tornado count nor a wrapping board rules it out
+     */
+    public boolean usesPatterns() {
+        return patterns != null && !useTornadoCount && !topology.wraps();
+    }
+
+    /**
+     * Find a cell which cannot be a tornado from the patterns of the frontier.
+     * A small component is a pattern on its own. A large component rarely repeats,
+     * but the constraints around each of its cells do, and a cell which they prove
+     * safe is safe under all the constraints. A pattern which is not in the store
+     * yet is solved on its own and stored, so the solver of the strategy is left
+     * with the deductions which need a whole large component.
+     *
+     * @param components of the frontier, or null if the store is not used
+     * @return the safe cell, or null if no pattern has one
+     */
+    public Cell findSafeCellWithPatterns(ArrayList<ArrayList<Cell>> components) {
+        patternsSettled = false;
+        if (components == null) {
+            return null;
+        }
+        boolean settled = true;
+        for (ArrayList<Cell> component : components) {
+            if (budget != null && budget.isExhausted()) {
+                budgetHit = true;
+                return null;
+            }
+            ArrayList<Cell> unknowns = getUnknowns(component);
+            if (unknowns.size() <= PatternStore.MAX_UNKNOWNS) {
+                Cell cell = findSafeCellInPattern(component, unknowns);
+                if (cell != null) {
+                    patterns.addAnswer();
+                    return cell;
+                }
+                continue;
+            }
+            settled = false;
+            for (Cell frontierCell : component) {
+                ArrayList<Cell> window = getWindow(frontierCell);
+                ArrayList<Cell> windowUnknowns = getUnknowns(window);
+                if (windowUnknowns.size() > PatternStore.MAX_UNKNOWNS) {
+                    continue;
+                }
+                Cell cell = findSafeCellInPattern(window, windowUnknowns);
+                if (cell != null) {
+                    patterns.addAnswer();
+                    return cell;
+                }
+            }
+        }
+        // If every component is small and has no safe cell, the solver would not find one either.
+        // The compiler is still run for the chances of the cells, which guessing uses.
+        patternsSettled = settled && compiler == null;
+        if (patternsSettled) {
+            patterns.addAnswer();
+        }
+        return null;
+    }
+
+    /**
+     * Return the frontier cells which share an unproved neighbour with a frontier cell, itself included
+     *
+     * @param cell of the frontier
+     * @return the cells, in board order
+     */
+    public ArrayList<Cell> getWindow(Cell cell) {
+        ArrayList<Cell> window = new ArrayList<>();
+        int[] adjacency = topology.getAdjacency();
+        int index = topology.index(cell.x, cell.y);
+        for (int i = topology.getStart(index); i < topology.getEnd(index); i++) {
+            if (cells.get(adjacency[i]).getHint() != '?') {
+                continue;
+            }
+            for (int j = topology.getStart(adjacency[i]); j < topology.getEnd(adjacency[i]); j++) {
+                if (inFrontier[adjacency[j]] && !window.contains(cells.get(adjacency[j]))) {
+                    window.add(cells.get(adjacency[j]));
+                }
+            }
+        }
+        window.sort((a, b) -> Integer.compare(a.y * width + a.x, b.y * width + b.x));
+        return window;
+    }
+
+    /**
+     * Find a safe cell of a pattern in the store, solving and storing the pattern if it is not there.
+     * The pattern is looked up in its canonical form, so that its rotations and reflections share an entry.
+     *
+     * @param frontierCells of the pattern
+     * @param unknowns unproved neighbours of the frontier cells, in board order
+     * @return the first safe cell in board order, or null if there is none
+     */
+    public Cell findSafeCellInPattern(ArrayList<Cell> frontierCells, ArrayList<Cell> unknowns) {
+        int symmetry = getPatternSymmetry(frontierCells, unknowns);
+        int[] origin = getPatternOrigin(frontierCells, unknowns, symmetry);
+        String key = getPatternKey(getPatternCode(frontierCells, unknowns, symmetry, origin), frontierCells.size());
+        int[] safeCells = patterns.get(key);
+        if (safeCells == null) {
+            boolean[] safe = solvePattern(frontierCells, unknowns);
+            ArrayList<int[]> positions = new ArrayList<>();
+            for (int u = 0; u < unknowns.size(); u++) {
+                if (safe[u]) {
+                    positions.add(getPatternPosition(unknowns.get(u), symmetry, origin));
+                }
+            }
+            safeCells = new int[2 * positions.size()];
+            for (int i = 0; i < positions.size(); i++) {
+                safeCells[2 * i] = positions.get(i)[0];
+                safeCells[2 * i + 1] = positions.get(i)[1];
+            }
+            patterns.put(key, safeCells);
+        }
+        for (Cell cell : unknowns) {
+            int[] position = getPatternPosition(cell, symmetry, origin);
+            for (int i = 0; i < safeCells.length; i += 2) {
+                if (safeCells[i] == position[0] && safeCells[i + 1] == position[1]) {
+                    return cell;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find every safe cell of a pattern by enumerating the tornadoes of its unproved cells.
+     * A pattern has at most PatternStore.MAX_UNKNOWNS cells, and the counts of its frontier
+     * cells prune the search, so this is much cheaper than encoding the pattern for a solver.
+     *
+     * @param frontierCells of the pattern
+     * @param unknowns unproved neighbours of the frontier cells, in board order
+     * @return unknown -> true if it cannot be a tornado
+     */
+    public boolean[] solvePattern(ArrayList<Cell> frontierCells, ArrayList<Cell> unknowns) {
+        // The unproved neighbours of every frontier cell, by position in unknowns, and the tornadoes among them
+        int[][] members = getMembers(frontierCells, unknowns);
+        int[] remaining = getRemaining(frontierCells);
+        // Frontier cell -> the number of its unproved neighbours not assigned yet
+        int[] open = new int[frontierCells.size()];
+        for (int c = 0; c < frontierCells.size(); c++) {
+            open[c] = members[c].length;
+        }
+        // Unknown -> the frontier cells around it
+        int n = unknowns.size();
+        int[][] constraints = new int[n][];
+        int[] nConstraints = new int[n];
+        for (int[] member : members) {
+            for (int u : member) {
+                nConstraints[u]++;
+            }
+        }
+        for (int u = 0; u < n; u++) {
+            constraints[u] = new int[nConstraints[u]];
+            nConstraints[u] = 0;
+        }
+        for (int c = 0; c < members.length; c++) {
+            for (int u : members[c]) {
+                constraints[u][nConstraints[u]++] = c;
+            }
+        }
+        // {the number of models found, the unknowns which are a tornado in one of them}
+        long[] found = new long[2];
+        long all = (1L << n) - 1;
+        new ModelEnumerator(constraints, remaining, open).enumerate(model -> {
+            found[0]++;
+            found[1] |= model;
+            // Once every unknown may be a tornado, no model can prove one safe
+            return found[1] != all;
+        });
+        boolean[] safe = new boolean[n];
+        for (int u = 0; u < n; u++) {
+            // A contradictory pattern has no models, so anything is provable, as for the solvers
+            safe[u] = (found[1] >> u & 1) == 0 || found[0] == 0;
+        }
+        return safe;
+    }
+
+    /**
+     * Return the unproved neighbours of every frontier cell
+     *
+     * @param frontierCells
+     * @param unknowns unproved neighbours of the frontier cells
+     * @return frontier cell -> its unproved neighbours, by position in unknowns
+     */
+    public int[][] getMembers(ArrayList<Cell> frontierCells, ArrayList<Cell> unknowns) {
+        int[][] members = new int[frontierCells.size()][];
+        for (int c = 0; c < frontierCells.size(); c++) {
+            ArrayList<Integer> neighbours = new ArrayList<>();
+            for (Cell neighbour : getNeighbours(frontierCells.get(c))) {
+                if (neighbour.getHint() == '?') {
+                    neighbours.add(unknowns.indexOf(neighbour));
+                }
+            }
+            members[c] = new int[neighbours.size()];
+            for (int k = 0; k < members[c].length; k++) {
+                members[c][k] = neighbours.get(k);
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Return the number of tornadoes still to place around every frontier cell
+     *
+     * @param frontierCells
+     * @return frontier cell -> its hint minus its flagged neighbours
+     */
+    public int[] getRemaining(ArrayList<Cell> frontierCells) {
+        int[] remaining = new int[frontierCells.size()];
+        for (int c = 0; c < frontierCells.size(); c++) {
+            Cell cell = frontierCells.get(c);
+            remaining[c] = Character.getNumericValue(cell.getHint()) - getTheNumberOfDangers(cell);
+        }
+        return remaining;
+    }
+
+    /**
+     * Return the symmetry of the topology which gives the canonical form of a pattern:
+     * the one whose code, moved to the corner of its bounding box, is the smallest.
+     * Patterns which are rotations or reflections of each other have the same canonical form.
+     *
+     * @param frontierCells of the pattern
+     * @param unknowns unproved neighbours of the frontier cells
+     * @return the symmetry
+     */
+    public int getPatternSymmetry(ArrayList<Cell> frontierCells, ArrayList<Cell> unknowns) {
+        int best = 0;
+        int[] bestCode = null;
+        for (int symmetry = 0; symmetry < topology.getSymmetries(); symmetry++) {
+            int[] code = getPatternCode(frontierCells, unknowns, symmetry, getPatternOrigin(frontierCells, unknowns, symmetry));
+            if (bestCode == null || Arrays.compare(code, bestCode) < 0) {
+                best = symmetry;
+                bestCode = code;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Return the corner of the bounding box of a pattern mapped by a symmetry
+     *
+     * @param frontierCells of the pattern
+     * @param unknowns unproved neighbours of the frontier cells
+     * @param symmetry of the topology
+     * @return {x, y} of the corner
+     */
+    public int[] getPatternOrigin(ArrayList<Cell> frontierCells, ArrayList<Cell> unknowns, int symmetry) {
+        int[] origin = {Integer.MAX_VALUE, Integer.MAX_VALUE};
+        for (Cell cell : frontierCells) {
+            int[] image = topology.transform(symmetry, cell.x, cell.y);
+            origin[0] = Math.min(origin[0], image[0]);
+            origin[1] = Math.min(origin[1], image[1]);
+        }
+        for (Cell cell : unknowns) {
+            int[] image = topology.transform(symmetry, cell.x, cell.y);
+            origin[0] = Math.min(origin[0], image[0]);
+            origin[1] = Math.min(origin[1], image[1]);
+        }
+        return origin;
+    }
+
+    /**
+     * Return the position of a cell in a pattern mapped by a symmetry
+     *
+     * @param cell of the pattern
+     * @param symmetry of the topology
+     * @param origin of the mapped pattern
+     * @return {dx, dy} from the origin
+     */
+    public int[] getPatternPosition(Cell cell, int symmetry, int[] origin) {
+        int[] image = topology.transform(symmetry, cell.x, cell.y);
+        return new int[]{image[0] - origin[0], image[1] - origin[1]};
+    }
+
+    /**
+     * Encode a pattern mapped by a symmetry: every frontier cell as (dy << 20 | dx << 8 | remaining
+     * tornadoes), then every unproved cell as (dy << 20 | dx << 8), each part sorted. A pattern
+     * is connected and has at most PatternStore.MAX_UNKNOWNS unproved cells, so its offsets are small.
+     *
+     * @param frontierCells of the pattern
+     * @param unknowns unproved neighbours of the frontier cells
+     * @param symmetry of the topology
+     * @param origin of the mapped pattern
+     * @return the code
+     */
+    public int[] getPatternCode(ArrayList<Cell> frontierCells, ArrayList<Cell> unknowns, int symmetry, int[] origin) {
+        int[] code = new int[frontierCells.size() + unknowns.size()];
+        for (int i = 0; i < frontierCells.size(); i++) {
+            Cell cell = frontierCells.get(i);
+            int[] position = getPatternPosition(cell, symmetry, origin);
+            code[i] = position[1] << 20 | position[0] << 8 | (Character.getNumericValue(cell.getHint()) - getTheNumberOfDangers(cell));
+        }
+        for (int i = 0; i < unknowns.size(); i++) {
+            int[] position = getPatternPosition(unknowns.get(i), symmetry, origin);
+            code[frontierCells.size() + i] = position[1] << 20 | position[0] << 8;
+        }
+        Arrays.sort(code, 0, frontierCells.size());
+        Arrays.sort(code, frontierCells.size(), code.length);
+        return code;
+    }
+
+    /**
+     * Describe a pattern from its code: the topology, then every frontier cell in row order
+     * with the number of tornadoes still around it, then the unproved cells.
+     * The neighbours of a cell are the same wherever it is moved, rotated or reflected on a
+     * board which does not wrap, so equal keys have equal constraints.
+     *
+     * @param code of the pattern
+     * @param nFrontierCells the number of frontier cells at the start of the code
+     * @return the key of the pattern
+     */
+    public String getPatternKey(int[] code, int nFrontierCells) {
+        StringBuilder key = new StringBuilder(topology.getClass().getSimpleName()).append('|');
+        for (int i = 0; i < code.length; i++) {
+            if (i == nFrontierCells) {
+                key.append('|');
+            }
+            key.append(code[i] >> 8 & 0xfff).append(',').append(code[i] >> 20);
+            if (i < nFrontierCells) {
+                key.append(',').append(code[i] & 0xff);
+            }
+            key.append(';');
+        }
+        if (code.length == nFrontierCells) {
+            key.append('|');
+        }
+        return key.toString();
+    }
+
+    /**
+     * Clear the FormulaFactory between moves once it has grown past FACTORY_LIMIT.
+     * No formula is kept from one move to the next: the SAT4J solver only holds
+     * integer clauses, and the DNF solver is built again for every move.
+     */
+    public void recycleFactory() {
+        if (f.statistics().formulas() > FACTORY_LIMIT) {
+            f.clear();
+            factoryClears++;
+        }
+    }
+
+    /**
+     * Start the budget of a move
+     */
+    public void startBudget() {
+        budgetHit = false;
+        if (budget != null) {
+            budget.startMove();
+        }
+    }
+
+    /**
+     * Make progress without the solver after the budget of a move has run out.
+     * The cheapest sound deduction is tried first, then a guess if the agent may guess.
+     *
+     * @param mayGuess true if the agent is allowed to guess
+     * @return true if a move was made
+     */
+    public boolean fallBack(boolean mayGuess) {
+        budgetHits++;
+        if (unprovedCells.isEmpty()) {
+            return false;
+        }
+        Cell cell = findSPSCell();
+        if (cell != null) {
+            addDeduction("SPS");
+            if (isAFN(cell)) {
+                proveCell(cell);
+            } else {
+                setDanger(cell);
+            }
+            return true;
+        }
+        if (!mayGuess) {
+            return false;
+        }
+        addDeduction("GUESS");
+        proveCell(guessPolicy != null ? getInformativeCell() : getSafestCell());
+        return true;
+    }
+
+    /**
+     * Estimate the chance of a tornado in the cell from its uncovered neighbours
+     *
+     * @param cell which is unproved
+     * @return the estimated chance of a tornado
+     */
+    public double getRisk(Cell cell) {
+        if (probabilities != null && probabilities.containsKey(getVariable(cell))) {
+            return probabilities.get(getVariable(cell));
+        }
+        double risk = -1;
+        for (Cell neighbour : getNeighbours(cell)) {
+            if (neighbour.getHint() != '?' && neighbour.getHint() != '*') {
+                int nUnknowns = getTheNumberOfUnknown(neighbour);
+                double local = (double) (Character.getNumericValue(neighbour.getHint()) - getTheNumberOfDangers(neighbour)) / nUnknowns;
+                risk = Math.max(risk, local);
+            }
+        }
+        return risk < 0 ? UNKNOWN_RISK : risk;
+    }
+
+    /**
+     * Return the unproved cell with the lowest estimated chance of a tornado
+     *
+     * @return the safest cell
+     */
+    public Cell getSafestCell() {
+        Cell safest = null;
+        double lowest = Double.MAX_VALUE;
+        for (Cell cell : unprovedCells) {
+            double risk = getRisk(cell);
+            if (risk < lowest) {
+                lowest = risk;
+                safest = cell;
+            }
+        }
+        return safest;
+    }
+
+    /**
+     * Return the unproved cell which is the best guess: among the cells almost as safe as the
+     * safest, the one which is expected to fix the most other cells once its hint is shown.
+     * The cells of the small components are scored by the guess policy until its time runs
+     * out. Any other cell next to the frontier keeps the estimate of getRisk, and a cell away
+     * from the frontier has the density of the tornadoes left, and frees its neighbours if its
+     * hint is 0.
+     *
+     * @return the cell to guess
+     */
+    public Cell getInformativeCell() {
+        guessPolicy.startGuess();
+        double density = (double) (game.getNumberOfTornadoes() - tornadoCells.size()) / Math.max(1, unprovedCells.size());
+        // Rounded, so that the scores of a component are reused while the density hardly changes
+        density = Math.min(0.99, Math.max(0.01, Math.round(100 * density) / 100.0));
+        HashMap<Cell, double[]> scores = new HashMap<>();
+        for (ArrayList<Cell> component : getComponents()) {
+            if (guessPolicy.isExhausted()) {
+                break;
+            }
+            ArrayList<Cell> unknowns = getUnknowns(component);
+            if (unknowns.size() > GainPolicy.MAX_UNKNOWNS) {
+                continue;
+            }
+            int[][] members = getMembers(component, unknowns);
+            int[] remaining = getRemaining(component);
+            int[][] adjacent = new int[unknowns.size()][];
+            int[] outside = new int[unknowns.size()];
+            for (int u = 0; u < unknowns.size(); u++) {
+                ArrayList<Integer> inside = new ArrayList<>();
+                for (Cell neighbour : getNeighbours(unknowns.get(u))) {
+                    if (neighbour.getHint() == '?') {
+                        int position = unknowns.indexOf(neighbour);
+                        if (position < 0) {
+                            outside[u]++;
+                        } else {
+                            inside.add(position);
+                        }
+                    }
+                }
+                adjacent[u] = new int[inside.size()];
+                for (int k = 0; k < adjacent[u].length; k++) {
+                    adjacent[u][k] = inside.get(k);
+                }
+            }
+            String key = Arrays.deepToString(members) + Arrays.toString(remaining) + Arrays.deepToString(adjacent)
+                    + Arrays.toString(outside) + density;
+            double[][] result = guessPolicy.score(key, members, remaining, adjacent, outside, density);
+            if (result == null) {
+                continue;
+            }
+            for (int u = 0; u < unknowns.size(); u++) {
+                scores.put(unknowns.get(u), new double[]{1 - result[0][u], result[1][u]});
+            }
+        }
+        double[] safety = new double[unprovedCells.size()];
+        double[] gains = new double[unprovedCells.size()];
+        double safest = 0;
+        for (int i = 0; i < unprovedCells.size(); i++) {
+            Cell cell = unprovedCells.get(i);
+            double[] score = scores.get(cell);
+            if (score != null) {
+                safety[i] = score[0];
+                gains[i] = score[1];
+            } else if (isNextToFrontier(cell)) {
+                safety[i] = 1 - getRisk(cell);
+            } else {
+                int degree = getNeighbours(cell).size();
+                safety[i] = 1 - density;
+                gains[i] = degree * Math.pow(1 - density, degree);
+            }
+            safest = Math.max(safest, safety[i]);
+        }
+        Cell best = null;
+        double bestValue = -1;
+        for (int i = 0; i < unprovedCells.size(); i++) {
+            double value = safety[i] * (1 + gains[i]);
+            if (safety[i] >= safest - GainPolicy.TOLERANCE && value > bestValue) {
+                bestValue = value;
+                best = unprovedCells.get(i);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Check whether an unproved cell has an uncovered neighbour
+     *
+     * @param cell which is unproved
+     * @return true if its hint is constrained by the frontier
+     */
+    public boolean isNextToFrontier(Cell cell) {
+        int index = topology.index(cell.x, cell.y);
+        int[] adjacency = topology.getAdjacency();
+        for (int i = topology.getStart(index); i < topology.getEnd(index); i++) {
+            if (inFrontier[adjacency[i]]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method for SAT with CNF encoding.
+     */
+    public void SATWithCNF() {
+
+        Cell targetCell = null;
+        boolean isSatisfiable = false;
+        try {
+            long start = System.nanoTime();
+            targetCell = findSafeCellForCNF();
+            isSatisfiable = targetCell != null;
+            solverNanos += System.nanoTime() - start;
+            if (isSatisfiable) {
+                counter++;
+                addDeduction("SAT");
+                proveCell(targetCell);
+            } else if (!budgetHit || !fallBack(false)) {
+                game.setSatisfiable(false);
+            }
+        } catch (ParserException e) {
+            System.out.println("ParserException: " + e.getMessage());
+        } catch (ContradictionException e) {
+            System.out.println("ContradictionException: " + e.getMessage());
+        } catch (TimeoutException e) {
+            System.out.println("TimeoutException: " + e.getMessage());
+        } catch (InterruptedException e) {
+            System.out.println("InterruptedException: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Play game based on the agent type
+     *
+     * @return the result of the game
+     */
+    public GameResult playGame() {
+        long start = System.nanoTime();
+        switch (type) {
+            case "P1":
+                playBasic();
+                break;
+            case "P2":
+                playBeginner();
+                break;
+            case "P3":
+                playIntermediateDNF();
+                break;
+            case "P4":
+                playIntermediateCNF();
+                break;
+            case "P5":
+                playRP();
+                break;
+            case "P6":
+                playRPSPS();
+                break;
+            case "P7":
+                playRPSATSDNF();
+                break;
+            case "P8":
+                playRPSATSCNF();
+                break;
+            case "P9":
+                playAdaptive();
+                break;
+        }
+        HashMap<String, Integer> nDeductions = new HashMap<>();
+        for (Map.Entry<String, int[]> entry : deductions.entrySet()) {
+            nDeductions.put(entry.getKey(), entry.getValue()[0]);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return new GameResult(type, outcome, moves, nDeductions, budgetHits, solverNanos, System.nanoTime() - start,
+                runtime.totalMemory() - runtime.freeMemory(), factoryClears, solverCalls);
+    }
+
+    /**
+     * Decide the outcome and print the final map unless the agent is headless
+     *
+     * @param canStall true if the agent may stop without solving or dying
+     */
+    public void finishGame(boolean canStall) {
+        if (game.isGameWon()) {
+            outcome = GameResult.Outcome.ALIVE;
+        } else if (canStall && game.isGameOver()) {
+            outcome = GameResult.Outcome.NOT_TERMINATED;
+        } else {
+            outcome = GameResult.Outcome.DEAD;
+        }
+        if (events != null) {
+            events.publish(GameEvent.end(outcome));
+        }
+        if (moveLog != null) {
+            try {
+                moveLog.endGame(outcome);
+            } catch (IOException e) {
+                System.out.println("IOException: " + e.getMessage());
+            }
+        }
+        if (headless) {
+            return;
+        }
+        System.out.println("Final map");
+        A3main.printBoard(board);
+        if (outcome == GameResult.Outcome.ALIVE) {
+            System.out.println("Result: Agent alive: all solved");
+        } else if (outcome == GameResult.Outcome.NOT_TERMINATED) {
+            System.out.println("Result: Agent not terminated");
+        } else {
+            System.out.println("Result: Agent dead: found mine");
+        }
+    }
+
+    /**
+     * Getter
+     *
+     * @return outcome, which is set by finishGame
+     */
+    public GameResult.Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Setter
+     *
+     * @param compiler which answers the SAT strategies from BDDs of the frontier components
+     */
+    public void setCompiler(FrontierCompiler compiler) {
+        this.compiler = compiler;
+    }
+
+    /**
+     * Setter
+     *
+     * @param forkComponents true to probe the frontier components of the DNF strategies as
+     *                       fork/join tasks when the agent plays inside a ForkJoinPool
+     */
+    public void setForkComponents(boolean forkComponents) {
+        this.forkComponents = forkComponents;
+    }
+
+    /**
+     * Seed the random probing strategy, so that a game of P5 to P8 can be played again
+     *
+     * @param seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Setter
+     *
+     * @param patterns which answers the SAT strategies from frontier patterns solved before
+     */
+    public void setPatternStore(PatternStore patterns) {
+        this.patterns = patterns;
+    }
+
+    /**
+     * Setter
+     *
+     * @param guessPolicy which chooses the guesses instead of random probing
+     */
+    public void setGuessPolicy(GainPolicy guessPolicy) {
+        this.guessPolicy = guessPolicy;
+    }
+
+    /**
+     * Setter
+     *
+     * @param costModel which predicts the cost of the solver stages of P9, and may be shared between games
+     */
+    public void setCostModel(CostModel costModel) {
+        this.costModel = costModel;
+    }
+
+    /**
+     * Setter. The kernel is given the cells proved so far.
+     *
+     * @param kernel which finds the cells of SPS with board-wide sweeps
+     */
+    public void setKernel(NeighbourCountKernel kernel) {
+        this.kernel = kernel;
+        this.kernelFound = 0;
+        this.kernelNext = 0;
+        for (int i = 0; i < cells.size(); i++) {
+            if (cells.get(i).getHint() != '?') {
+                kernel.setHint(i, cells.get(i).getHint());
+            }
+        }
+    }
+
+    /**
+     * Setter
+     *
+     * @param events which the moves, deductions and the end of the game are published to
+     */
+    public void setEventStream(EventStream events) {
+        this.events = events;
+    }
+
+    /**
+     * Setter, starts a new game in the given log
+     *
+     * @param moveLog
+     * @param boardId the name of the board
+     * @param options of A3main which change the game, so that Replay can play it on with them
+     */
+    public void setMoveLog(MoveLog moveLog, String boardId, ArrayList<String> options) {
+        this.moveLog = moveLog;
+        try {
+            moveLog.startGame(type, boardId, topology.getName(), width, height, seed, options);
+        } catch (IOException e) {
+            System.out.println("IOException: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Setter
+     *
+     * @param satConfig SAT4J configuration: default, glucose or light
+     */
+    public void setSatConfig(String satConfig) {
+        this.satConfig = satConfig;
+    }
+
+    /**
+     * Setter
+     *
+     * @param budget per-move solver budget, null for no limit
+     */
+    public void setBudget(MoveBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Setter
+     *
+     * @param portfolio which races SAT backends in the SAT strategies, null for none
+     */
+    public void setPortfolio(Portfolio portfolio) {
+        this.portfolio = portfolio;
+    }
+
+    /**
+     * Setter
+     *
+     * @param useTornadoCount true to add the total number of tornadoes to the KB
+     */
+    public void setUseTornadoCount(boolean useTornadoCount) {
+        this.useTornadoCount = useTornadoCount;
+    }
+
+    /**
+     * Setter
+     *
+     * @param headless
+     */
+    public void setHeadless(boolean headless) {
+        this.headless = headless;
+    }
+
     /**
      * Play Basic Tornado Sweeper Agent
      */
@@ -628,16 +2002,11 @@ public class Agent {
                 if (this.verbose) {
                     A3main.printBoard(board);
                 }
+                addDeduction("BASIC");
                 proveCell(unprovedCells.get(0));
             }
         }
-        System.out.println("Final map");
-        A3main.printBoard(board);
-        if (game.isGameWon()) {
-            System.out.println("Result: Agent alive: all solved");
-        } else {
-            System.out.println("Result: Agent dead: found mine");
-        }
+        finishGame(false);
     }
 
     /**
@@ -649,15 +2018,7 @@ public class Agent {
             SPS();
         }
 //        System.out.println("counter:"+ counter);
-        System.out.println("Final map");
-        A3main.printBoard(board);
-        if (game.isGameWon()) {
-            System.out.println("Result: Agent alive: all solved");
-        } else if (game.isGameOver()) {
-            System.out.println("Result: Agent not terminated");
-        } else {
-            System.out.println("Result: Agent dead: found mine");
-        }
+        finishGame(true);
     }
 
     /**
@@ -673,15 +2034,7 @@ public class Agent {
             SPS();
         }
 //        System.out.println("counter:"+ counter);
-        System.out.println("Final map");
-        A3main.printBoard(board);
-        if (game.isGameWon()) {
-            System.out.println("Result: Agent alive: all solved");
-        } else if (game.isGameOver()) {
-            System.out.println("Result: Agent not terminated");
-        } else {
-            System.out.println("Result: Agent dead: found mine");
-        }
+        finishGame(true);
     }
 
     /**
@@ -697,15 +2050,7 @@ public class Agent {
             SPS();
         }
 //        System.out.println("counter:"+ counter);
-        System.out.println("Final map");
-        A3main.printBoard(board);
-        if (game.isGameWon()) {
-            System.out.println("Result: Agent alive: all solved");
-        } else if (game.isGameOver()) {
-            System.out.println("Result: Agent not terminated");
-        } else {
-            System.out.println("Result: Agent dead: found mine");
-        }
+        finishGame(true);
     }
 
     /**
@@ -719,13 +2064,7 @@ public class Agent {
             }
         }
 //        System.out.println("counter:"+ counter);
-        System.out.println("Final map");
-        A3main.printBoard(board);
-        if (game.isGameWon()) {
-            System.out.println("Result: Agent alive: all solved");
-        } else {
-            System.out.println("Result: Agent dead: found mine");
-        }
+        finishGame(false);
     }
 
     /**
@@ -737,15 +2076,7 @@ public class Agent {
             RPSPS();
         }
 //        System.out.println("counter:"+ counter);
-        System.out.println("Final map");
-        A3main.printBoard(board);
-        if (game.isGameWon()) {
-            System.out.println("Result: Agent alive: all solved");
-        } else if (game.isGameOver()) {
-            System.out.println("Result: Agent not terminated");
-        } else {
-            System.out.println("Result: Agent dead: found mine");
-        }
+        finishGame(true);
     }
 
     /**
@@ -761,15 +2092,7 @@ public class Agent {
             SPS();
         }
 //        System.out.println("counter:"+ counter);
-        System.out.println("Final map");
-        A3main.printBoard(board);
-        if (game.isGameWon()) {
-            System.out.println("Result: Agent alive: all solved");
-        } else if (game.isGameOver()) {
-            System.out.println("Result: Agent not terminated");
-        } else {
-            System.out.println("Result: Agent dead: found mine");
-        }
+        finishGame(true);
     }
 
     /**
@@ -785,23 +2108,37 @@ public class Agent {
             SPS();
         }
 //        System.out.println("counter:"+ counter);
-        System.out.println("Final map");
-        A3main.printBoard(board);
-        if (game.isGameWon()) {
-            System.out.println("Result: Agent alive: all solved");
-        } else if (game.isGameOver()) {
-            System.out.println("Result: Agent not terminated");
-        } else {
-            System.out.println("Result: Agent dead: found mine");
+        finishGame(true);
+    }
+
+    /**
+     * Play Additional Tornado Sweeper Agent which picks the solver stage of every move by its predicted cost
+     */
+    public void playAdaptive() {
+        if (costModel == null) {
+            costModel = new CostModel();
+        }
+        if (patterns == null && !useTornadoCount && !topology.wraps()) {
+            patterns = new PatternStore(PatternStore.CAPACITY);
+        }
+        uncoverNeighbours();
+        while (!game.isGameOver()) {
+            adaptiveMove();
         }
+        finishGame(false);
     }
 
     /**
      * Random Probing Strategy
      */
     public void RP() {
-        Random rand = new Random();
-        Cell cell = unprovedCells.get(rand.nextInt(unprovedCells.size()));
+        if (guessPolicy != null) {
+            addDeduction("GUESS");
+            proveCell(getInformativeCell());
+            return;
+        }
+        Cell cell = unprovedCells.get(random.nextInt(unprovedCells.size()));
+        addDeduction("RP");
         proveCell(cell);
     }
 
@@ -812,25 +2149,20 @@ public class Agent {
         Cell targetCell = null;
         String situation = "RP";
         // Check AFN or AMN
-        for (Cell cell : unprovedCells) {
-            if (isAFN(cell)) {
-                situation = "AFN";
-                targetCell = cell;
-                break;
-            } else if (isAMN(cell)) {
-                situation = "AMN";
-                targetCell = cell;
-                break;
-            }
+        targetCell = findSPSCell();
+        if (targetCell != null) {
+            situation = isAFN(targetCell) ? "AFN" : "AMN";
         }
         if (situation.equals("RP")) {
             counter++;
             RP();
         } else if (situation.equals("AFN")) {
             counter++;
+            addDeduction("SPS");
             proveCell(targetCell);
         } else {
             counter++;
+            addDeduction("SPS");
             setDanger(targetCell);
         }
     }
@@ -843,31 +2175,30 @@ public class Agent {
         Cell targetCell = null;
         String situation = "RP";
         try {
-            // Build KB based on the uncoveredCells
-            String kbString = buildKB();
-            // Convert the KB into a logical formula
-            for (Cell cell : unprovedCells) {
-                String clause = "&T" + cell.x + cell.y;
-                Formula formula = p.parse(kbString + clause);
-                // Convert a logical formula to a CNF encoding
-                SATSolver miniSat = MiniSat.miniSat(f);
-                miniSat.add(formula);
-                Tristate result = miniSat.sat();
-                if (result.toString().equals("FALSE")) {
-                    targetCell = cell;
-                    situation = "S";
-                    break;
-                }
+            long start = System.nanoTime();
+            targetCell = findSafeCellForDNF();
+            if (targetCell != null) {
+                situation = "S";
+            } else if (budgetHit) {
+                situation = "B";
             }
+            solverNanos += System.nanoTime() - start;
             if (situation.equals("S")) {
                 counter++;
+                addDeduction("SAT");
                 proveCell(targetCell);
+            } else if (situation.equals("B")) {
+                if (!fallBack(true) || game.isGameOver()) {
+                    game.setSatisfiable(false);
+                }
             } else if (situation.equals("RP")) {
                 game.setSatisfiable(false);
                 RPSPS();
             }
         } catch (ParserException e) {
             System.out.println("ParserException: " + e.getMessage());
+        } catch (InterruptedException e) {
+            System.out.println("InterruptedException: " + e.getMessage());
         }
     }
 
@@ -876,40 +2207,25 @@ public class Agent {
      */
     public void RPSATWithCNF() {
 
-        ISolver solver;
         String situation = "RP";
         Cell targetCell = null;
         try {
-            // Build KB based on the uncoveredCells
-            String kbString = buildKB();
-            DIMACS dimacs = new DIMACS();
-            // Convert the KB into a logical formula
-            Formula formula = p.parse(kbString);
-            // Convert a logical formula to a CNF encoding
-            int[][] dimacsClauses = dimacs.buildDIMACS(formula);
-            solver = SolverFactory.newDefault();
-            solver.newVar(1000);
-            solver.setExpectedNumberOfClauses(50000);
-            for (int j = 0; j < dimacsClauses.length; j++) {
-                VecInt vecInt = new VecInt(dimacsClauses[j]);
-                solver.addClause(vecInt);
-            }
-            // Check the satisfiability of including a tornado
-            for (Cell cell : unprovedCells) {
-                String clause = "T" + cell.x + cell.y;
-                if (dimacs.getLiterals().containsKey(clause)) {
-                    int literal = dimacs.getLiterals().get(clause);
-                    int[] literals = new int[]{literal};
-                    if (!solver.isSatisfiable(new VecInt(literals))) {
-                        targetCell = cell;
-                        situation = "S";
-                        break;
-                    }
-                }
+            long start = System.nanoTime();
+            targetCell = findSafeCellForCNF();
+            if (targetCell != null) {
+                situation = "S";
+            } else if (budgetHit) {
+                situation = "B";
             }
+            solverNanos += System.nanoTime() - start;
             if (situation.equals("S")) {
                 counter++;
+                addDeduction("SAT");
                 proveCell(targetCell);
+            } else if (situation.equals("B")) {
+                if (!fallBack(true) || game.isGameOver()) {
+                    game.setSatisfiable(false);
+                }
             } else if (situation.equals("RP")) {
                 game.setSatisfiable(false);
                 RPSPS();
@@ -920,6 +2236,100 @@ public class Agent {
             System.out.println("ContradictionException: " + e.getMessage());
         } catch (TimeoutException e) {
             System.out.println("TimeoutException: " + e.getMessage());
+        } catch (InterruptedException e) {
+            System.out.println("InterruptedException: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Make one move of the adaptive agent.
+     * SPS is tried first, as it costs next to nothing. Otherwise the frontier is measured,
+     * and the local patterns are tried before a complete solver if their predicted cost is
+     * below that of the cheapest complete stage times their chance of deciding the move.
+     * The complete stage with the lowest predicted cost is run next. Every stage is timed
+     * and recorded in the cost model, and the agent guesses if no cell can be proved safe.
+     */
+    public void adaptiveMove() {
+        probabilities = null;
+        Cell targetCell = findSPSCell();
+        if (targetCell != null) {
+            addDeduction("SPS");
+            if (isAFN(targetCell)) {
+                proveCell(targetCell);
+            } else {
+                setDanger(targetCell);
+            }
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            recycleFactory();
+            startBudget();
+            ArrayList<ArrayList<Cell>> components = getComponents();
+            int nUnknowns = 0;
+            int nFrontierCells = 0;
+            int largest = 0;
+            for (ArrayList<Cell> component : components) {
+                int n = getUnknowns(component).size();
+                nUnknowns += n;
+                nFrontierCells += component.size();
+                largest = Math.max(largest, n);
+            }
+            double[] features = CostModel.getFeatures(nUnknowns, nFrontierCells, largest);
+            String complete = costModel.choose(compiler != null && !useTornadoCount ? ALL_STAGES : SAT_STAGES, features);
+            boolean decided = false;
+            if (usesPatterns() && (!costModel.isTrained("LOCAL") || costModel.predict("LOCAL", features)
+                    < costModel.getDecisionRate("LOCAL") * costModel.predict(complete, features))) {
+                long stageStart = System.nanoTime();
+                targetCell = findSafeCellWithPatterns(components);
+                decided = targetCell != null || patternsSettled;
+                costModel.record("LOCAL", features, System.nanoTime() - stageStart, decided);
+            }
+            if (!decided && !budgetHit) {
+                long stageStart = System.nanoTime();
+                targetCell = findSafeCellWithStage(complete);
+                costModel.record(complete, features, System.nanoTime() - stageStart, !budgetHit);
+            }
+            solverNanos += System.nanoTime() - start;
+            if (targetCell != null) {
+                addDeduction("SAT");
+                proveCell(targetCell);
+            } else if (budgetHit) {
+                fallBack(true);
+            } else {
+                addDeduction("GUESS");
+                proveCell(guessPolicy != null ? getInformativeCell() : getSafestCell());
+            }
+            return;
+        } catch (ParserException e) {
+            System.out.println("ParserException: " + e.getMessage());
+        } catch (ContradictionException e) {
+            System.out.println("ContradictionException: " + e.getMessage());
+        } catch (TimeoutException e) {
+            System.out.println("TimeoutException: " + e.getMessage());
+        }
+        // The move must still be made, or playAdaptive would ask for it again on the same board
+        addDeduction("GUESS");
+        proveCell(getSafestCell());
+    }
+
+    /**
+     * Find a cell which cannot be a tornado with one of the complete stages of the adaptive agent
+     *
+     * @param stage DNF, CNF or BDD
+     * @return the safe cell, or null if there is none or the budget has run out
+     * @throws ParserException
+     * @throws ContradictionException
+     * @throws TimeoutException
+     */
+    public Cell findSafeCellWithStage(String stage) throws ParserException, ContradictionException, TimeoutException {
+        switch (stage) {
+            case "DNF":
+                return findSafeCellWithDNF();
+            case "CNF":
+                return findSafeCellWithCNF();
+            default:
+                return findSafeCellWithCompiler();
         }
     }
 }
@@ -0,0 +1,73 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the heap allocation of the single point strategy.
+ *
+ * The bytes allocated by the benchmark thread are read from the JVM before and
+ * after the measured work, so the numbers are exact and need no GC log. Games are
+ * played first to warm the JIT up, since allocations which escape analysis removes
+ * only disappear once the hot path is compiled.
+ *
+ * scan: one search for an AFN or AMN cell, without acting on it
+ * step: one full SPS move, including uncovering or flagging the cell and the bookkeeping of the agent
+ */
+public class AllocationBenchmark {
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Run the benchmark
+     *
+     * @param args [board id] [games], e.g. GEN32x32:150 200
+     */
+    public static void main(String[] args) {
+        String boardId = args.length > 0 ? args[0] : "GEN32x32:150";
+        int nGames = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        // Warm up on the same kind of board
+        play(boardId, nGames, false);
+        play(boardId, nGames, true);
+    }
+
+    /**
+     * Play games with the SPS agent and print the bytes allocated per scan and per step
+     *
+     * @param boardId of the first board, the seed is increased for the others
+     * @param nGames the number of games
+     * @param report false to only warm up
+     */
+    private static void play(String boardId, int nGames, boolean report) {
+        long thread = Thread.currentThread().getId();
+        long scanBytes = 0;
+        long stepBytes = 0;
+        long nScans = 0;
+        long nSteps = 0;
+        for (int i = 0; i < nGames; i++) {
+            String id = boardId.startsWith("GEN") ? boardId + ":" + i : boardId;
+            int[] size = BoardGenerator.getSize(id);
+            Topology topology = Topology.create("hex", size[0], size[1]);
+            Agent agent = new Agent("P2", false, new Game(BoardGenerator.loadView(id, topology), topology));
+            agent.setHeadless(true);
+            agent.uncoverNeighbours();
+            while (true) {
+                long before = threads.getThreadAllocatedBytes(thread);
+                Cell cell = agent.findSPSCell();
+                long middle = threads.getThreadAllocatedBytes(thread);
+                if (cell == null) {
+                    break;
+                }
+                agent.SPS();
+                long after = threads.getThreadAllocatedBytes(thread);
+                scanBytes += middle - before;
+                stepBytes += after - middle;
+                nScans++;
+                nSteps++;
+            }
+        }
+        if (report) {
+            System.out.println("Boards " + boardId + " games=" + nGames + " steps=" + nSteps);
+            System.out.printf("scan %.1f bytes/op%n", (double) scanBytes / nScans);
+            System.out.printf("step %.1f bytes/op%n", (double) stepBytes / nSteps);
+        }
+    }
+}
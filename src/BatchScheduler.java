@@ -0,0 +1,198 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays a batch of games on a work-stealing ForkJoinPool.
+ *
+ * The cost of a game ranges from microseconds on a TEST board to seconds for a
+ * DNF agent on a LARGE one, so splitting the games evenly between threads leaves
+ * most threads idle behind the slowest. Here every game is a fork/join task, and
+ * the DNF strategies fork every frontier component of a move as a task of its
+ * own (see ComponentProbe). A thread which runs out of games steals components
+ * of the large games still running, so the work of a single expensive game is
+ * spread over the pool as well.
+ *
+ * Usage: java BatchScheduler agents=P1,P2,... boards=<set> [seeds=n] [threads=1,2,4,...]
+ *        [mode=steal|fixed|both] [options of A3main]
+ * The batch is played once per thread count, and the games per second and the
+ * speedup over the first thread count are printed. mode=fixed plays the same
+ * batch split into equal contiguous runs of games, one per thread, for comparison.
+ * Every game of P9 learns its stage costs on its own, so that a run does not
+ * train the next one.
+ */
+public class BatchScheduler {
+
+    // {agent type, board id, seed} of every game
+    private ArrayList<String[]> games;
+    // Options of A3main which every game is played with
+    private HashMap<String, String> options;
+
+    /**
+     * A game played as a fork/join task
+     */
+    private class GameTask extends RecursiveTask<GameResult> {
+
+        private static final long serialVersionUID = 1L;
+
+        private String[] game;
+
+        private GameTask(String[] game) {
+            this.game = game;
+        }
+
+        @Override
+        protected GameResult compute() {
+            Agent agent = Tournament.createAgent(game[0], game[1], Long.parseLong(game[2]), options, null);
+            agent.setForkComponents(true);
+            return agent.playGame();
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param agents the agent types
+     * @param boards the board ids
+     * @param nSeeds the number of seeds per board
+     * @param options of every game
+     */
+    public BatchScheduler(ArrayList<String> agents, ArrayList<String> boards, int nSeeds, HashMap<String, String> options) {
+        this.games = new ArrayList<>();
+        this.options = options;
+        for (String agent : agents) {
+            for (String board : boards) {
+                for (int seed = 0; seed < nSeeds; seed++) {
+                    games.add(new String[]{agent, Tournament.getBoardId(board, seed), String.valueOf(seed)});
+                }
+            }
+        }
+    }
+
+    /**
+     * Play every game on a work-stealing pool
+     *
+     * @param parallelism the number of worker threads
+     * @return the results, in game order
+     */
+    public GameResult[] playStealing(int parallelism) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(new RecursiveTask<GameResult[]>() {
+                @Override
+                protected GameResult[] compute() {
+                    ArrayList<GameTask> tasks = new ArrayList<>();
+                    for (String[] game : games) {
+                        tasks.add(new GameTask(game));
+                    }
+                    ForkJoinTask.invokeAll(tasks);
+                    GameResult[] results = new GameResult[tasks.size()];
+                    for (int i = 0; i < results.length; i++) {
+                        results[i] = tasks.get(i).join();
+                    }
+                    return results;
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Play every game with a fixed split: each thread plays an equal contiguous run of the games
+     *
+     * @param nThreads the number of threads
+     * @return the results, in game order
+     * @throws InterruptedException
+     */
+    public GameResult[] playFixed(int nThreads) throws InterruptedException {
+        GameResult[] results = new GameResult[games.size()];
+        Thread[] threads = new Thread[nThreads];
+        for (int t = 0; t < nThreads; t++) {
+            int from = t * games.size() / nThreads;
+            int to = (t + 1) * games.size() / nThreads;
+            threads[t] = new Thread(() -> {
+                for (int i = from; i < to; i++) {
+                    String[] game = games.get(i);
+                    results[i] = Tournament.play(game[0], game[1], Long.parseLong(game[2]), options, null);
+                }
+            }, "batch-" + t);
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return results;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of games in the batch
+     */
+    public int size() {
+        return games.size();
+    }
+
+    /**
+     * Print the throughput of a run
+     *
+     * @param mode steal or fixed
+     * @param nThreads the number of threads
+     * @param results of the games
+     * @param nanos wall time of the batch
+     * @param baseNanos wall time of the first thread count in the same mode
+     */
+    private static void printRun(String mode, int nThreads, GameResult[] results, long nanos, long baseNanos) {
+        int wins = 0;
+        for (GameResult result : results) {
+            if (result.isWon()) {
+                wins++;
+            }
+        }
+        System.out.println(String.format("%-5s threads=%-3d games=%d won=%d wallMs=%.1f games/s=%.1f speedup=%.2f",
+                mode, nThreads, results.length, wins, nanos / 1e6, results.length / (nanos / 1e9), (double) baseNanos / nanos));
+    }
+
+    /**
+     * Play a batch for every thread count and print the throughput
+     *
+     * @param args agents=P1,P2,... boards=<set> [seeds=n] [threads=1,2,4,...] [mode=steal|fixed|both] and the options of the games
+     */
+    public static void main(String[] args) {
+        HashMap<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            options.put(eq < 0 ? arg : arg.substring(0, eq), eq < 0 ? "" : arg.substring(eq + 1));
+        }
+        ArrayList<String> agents = new ArrayList<>(Arrays.asList(options.getOrDefault("agents", "P1,P2,P3,P4").split(",")));
+        int nSeeds = Integer.parseInt(options.getOrDefault("seeds", "1"));
+        String mode = options.getOrDefault("mode", "steal");
+        String[] threadCounts = options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())).split(",");
+        try {
+            BatchScheduler scheduler = new BatchScheduler(agents, Tournament.getBoards(options.getOrDefault("boards", "worlds")), nSeeds, options);
+            System.out.println("Batch of " + scheduler.size() + " games on " + Runtime.getRuntime().availableProcessors() + " processors");
+            for (String run : mode.equals("both") ? new String[]{"fixed", "steal"} : new String[]{mode}) {
+                long baseNanos = 0;
+                for (String threadCount : threadCounts) {
+                    int nThreads = Integer.parseInt(threadCount);
+                    long start = System.nanoTime();
+                    GameResult[] results = run.equals("fixed") ? scheduler.playFixed(nThreads) : scheduler.playStealing(nThreads);
+                    long nanos = System.nanoTime() - start;
+                    if (baseNanos == 0) {
+                        baseNanos = nanos;
+                    }
+                    printRun(run, nThreads, results, nanos, baseNanos);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("IOException: " + e.getMessage());
+        } catch (InterruptedException e) {
+            System.out.println("InterruptedException: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,338 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binary corpus of boards, read through a memory-mapped file.
+ *
+ * The file starts with the magic "TSB1". Every board follows as a record of its
+ * width and height (two unsigned shorts) and its cells packed two to a byte,
+ * row by row, high nibble first. A nibble holds the hint 0 to 9, or 15 for a tornado.
+ * A 16x16 board takes 132 bytes. The reader only keeps the offset of every record
+ * on the heap, and hands out views which decode the cells straight from the mapping.
+ * A corpus is limited to 2 GB, the size of a single mapping.
+ */
+public class BoardCorpus {
+
+    private static final byte[] MAGIC = "TSB1".getBytes(StandardCharsets.US_ASCII);
+    private static final int TORNADO = 15;
+    // Corpora opened by open(), so that every board id does not map and index the file again
+    private static final ConcurrentHashMap<Path, BoardCorpus> opened = new ConcurrentHashMap<>();
+
+    private MappedByteBuffer buffer;
+    // Offset of every record
+    private int[] offsets;
+    private int size;
+
+    /**
+     * Constructor, maps a corpus file and indexes its records
+     *
+     * @param path of the corpus
+     * @throws IOException
+     */
+    public BoardCorpus(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("corpus larger than 2 GB: " + path);
+            }
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.limit() <= i || buffer.get(i) != MAGIC[i]) {
+                throw new IOException("not a board corpus: " + path);
+            }
+        }
+        this.offsets = new int[1024];
+        int offset = MAGIC.length;
+        while (offset + 4 <= buffer.limit()) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            offsets[size++] = offset;
+            int width = buffer.getShort(offset) & 0xFFFF;
+            int height = buffer.getShort(offset + 2) & 0xFFFF;
+            offset += 4 + (width * height + 1) / 2;
+        }
+        if (offset != buffer.limit()) {
+            throw new IOException("truncated board corpus: " + path);
+        }
+    }
+
+    /**
+     * Return the corpus of a file, mapping and indexing it on first use
+     *
+     * @param path of the corpus
+     * @return the corpus
+     * @throws IOException
+     */
+    public static BoardCorpus open(Path path) throws IOException {
+        BoardCorpus corpus = opened.get(path);
+        if (corpus == null) {
+            corpus = new BoardCorpus(path);
+            opened.putIfAbsent(path, corpus);
+        }
+        return corpus;
+    }
+
+    /**
+     * Return a board from a board id of the form <corpus file>#<index>
+     *
+     * @param id of the board
+     * @return the view
+     */
+    public static BoardView load(String id) {
+        int hash = id.lastIndexOf('#');
+        try {
+            return open(Paths.get(id.substring(0, hash))).get(Integer.parseInt(id.substring(hash + 1)));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("IOException: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of boards
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return a view of a board which reads its cells from the mapping
+     *
+     * @param index of the board
+     * @return the view
+     */
+    public BoardView get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("board " + index + " of " + size);
+        }
+        int offset = offsets[index];
+        int width = buffer.getShort(offset) & 0xFFFF;
+        int height = buffer.getShort(offset + 2) & 0xFFFF;
+        ByteBuffer cells = buffer.slice(offset + 4, (width * height + 1) / 2);
+        return new BoardView() {
+            @Override
+            public int getWidth() {
+                return width;
+            }
+
+            @Override
+            public int getHeight() {
+                return height;
+            }
+
+            @Override
+            public char get(int x, int y) {
+                int i = y * width + x;
+                int b = cells.get(i >> 1);
+                return decode((i & 1) == 0 ? (b >> 4) & 0xF : b & 0xF);
+            }
+        };
+    }
+
+    /**
+     * Turn a nibble back into a cell
+     *
+     * @param nibble
+     * @return the cell
+     */
+    private static char decode(int nibble) {
+        return nibble == TORNADO ? 't' : (char) ('0' + nibble);
+    }
+
+    /**
+     * Turn a cell into a nibble
+     *
+     * @param c the cell, 't' or a hint
+     * @return the nibble
+     */
+    private static int encode(char c) {
+        if (c == 't') {
+            return TORNADO;
+        }
+        if (c < '0' || c > '9') {
+            throw new IllegalArgumentException("not a board cell: " + c);
+        }
+        return c - '0';
+    }
+
+    /**
+     * Appends boards to a new corpus file
+     */
+    public static class Writer implements AutoCloseable {
+
+        private DataOutputStream out;
+        private int size;
+
+        /**
+         * Constructor, creates or truncates the file
+         *
+         * @param path of the corpus
+         * @throws IOException
+         */
+        public Writer(Path path) throws IOException {
+            OutputStream file = Files.newOutputStream(path);
+            this.out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+            out.write(MAGIC);
+        }
+
+        /**
+         * Append a board
+         *
+         * @param board which is appended
+         * @throws IOException
+         */
+        public void add(BoardView board) throws IOException {
+            int width = board.getWidth();
+            int height = board.getHeight();
+            if (width > 0xFFFF || height > 0xFFFF) {
+                throw new IllegalArgumentException("board too large: " + width + "x" + height);
+            }
+            out.writeShort(width);
+            out.writeShort(height);
+            int n = width * height;
+            for (int i = 0; i < n; i += 2) {
+                int high = encode(board.get(i % width, i / width));
+                int low = i + 1 < n ? encode(board.get((i + 1) % width, (i + 1) / width)) : 0;
+                out.write(high << 4 | low);
+            }
+            size++;
+        }
+
+        /**
+         * Getter
+         *
+         * @return the number of boards written
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Flush and close the file
+         *
+         * @throws IOException
+         */
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Read boards in the plain-text layout: one row per line, with the cells separated
+     * by spaces, commas or not at all, and the boards separated by blank lines. Lines
+     * starting with '#' are ignored.
+     *
+     * @param path of the text file
+     * @return the boards, indexed [y][x]
+     * @throws IOException
+     */
+    public static ArrayList<char[][]> readText(Path path) throws IOException {
+        ArrayList<char[][]> boards = new ArrayList<>();
+        ArrayList<String> rows = new ArrayList<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            if (line.startsWith("#")) {
+                continue;
+            }
+            // Also accepts the rows of the World literals, e.g. { '1', 't', '2' },
+            String row = line.replaceAll("[\\s,'{}]", "");
+            if (row.isEmpty()) {
+                addText(boards, rows, path);
+                continue;
+            }
+            rows.add(row);
+        }
+        addText(boards, rows, path);
+        return boards;
+    }
+
+    /**
+     * Turn the rows read so far into a board
+     *
+     * @param boards which the board is added to
+     * @param rows of the board, cleared afterwards
+     * @param path of the text file, for the error message
+     * @throws IOException if the rows have different lengths
+     */
+    private static void addText(ArrayList<char[][]> boards, ArrayList<String> rows, Path path) throws IOException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        char[][] board = new char[rows.size()][];
+        for (int y = 0; y < rows.size(); y++) {
+            board[y] = rows.get(y).toCharArray();
+            if (board[y].length != board[0].length) {
+                throw new IOException("ragged board " + (boards.size() + 1) + " in " + path);
+            }
+        }
+        boards.add(board);
+        rows.clear();
+    }
+
+    /**
+     * Build and inspect corpora
+     *
+     * @param args import <corpus> <text files...> | worlds <corpus> | generate <corpus> <n> <w>x<h> [tornadoes] [seed] | info <corpus>
+     */
+    public static void main(String[] args) {
+        try {
+            switch (args[0]) {
+                case "import":
+                    try (Writer writer = new Writer(Paths.get(args[1]))) {
+                        for (int i = 2; i < args.length; i++) {
+                            for (char[][] board : readText(Paths.get(args[i]))) {
+                                writer.add(BoardView.of(board));
+                            }
+                        }
+                        System.out.println("Wrote " + writer.size() + " boards to " + args[1]);
+                    }
+                    break;
+                case "worlds":
+                    try (Writer writer = new Writer(Paths.get(args[1]))) {
+                        for (World world : World.values()) {
+                            writer.add(BoardView.of(world.map));
+                        }
+                        System.out.println("Wrote " + writer.size() + " boards to " + args[1]);
+                    }
+                    break;
+                case "generate":
+                    int n = Integer.parseInt(args[2]);
+                    String[] dimensions = args[3].split("x");
+                    Topology topology = new HexTopology(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]));
+                    int nTornadoes = args.length > 4 ? Integer.parseInt(args[4]) : topology.getWidth() * topology.getHeight() / 6;
+                    Random random = new Random(args.length > 5 ? Long.parseLong(args[5]) : 0);
+                    try (Writer writer = new Writer(Paths.get(args[1]))) {
+                        for (int i = 0; i < n; i++) {
+                            writer.add(BoardView.of(BoardGenerator.generate(topology, nTornadoes, random)));
+                        }
+                        System.out.println("Wrote " + writer.size() + " boards to " + args[1]);
+                    }
+                    break;
+                case "info":
+                    BoardCorpus corpus = new BoardCorpus(Paths.get(args[1]));
+                    System.out.println(args[1] + ": " + corpus.size() + " boards");
+                    break;
+                default:
+                    System.out.println("Unknown command: " + args[0]);
+            }
+        } catch (IOException e) {
+            System.out.println("IOException: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.Random;
+
+/**
+ * Generates boards and their hints for any topology.
+ */
+public class BoardGenerator {
+
+    /**
+     * Generate a random board. The two hint cells, top-left and center, are never tornadoes.
+     *
+     * @param topology of the board
+     * @param nTornadoes the number of tornadoes
+     * @param random
+     * @return the board, indexed [y][x]
+     */
+    public static char[][] generate(Topology topology, int nTornadoes, Random random) {
+        int width = topology.getWidth();
+        int height = topology.getHeight();
+        char[][] board = new char[height][width];
+        int first = topology.index(0, 0);
+        int center = topology.index(width / 2, height / 2);
+        int placed = 0;
+        while (placed < nTornadoes && placed < width * height - 2) {
+            int index = random.nextInt(width * height);
+            if (index != first && index != center && board[index / width][index % width] != 't') {
+                board[index / width][index % width] = 't';
+                placed++;
+            }
+        }
+        return computeHints(board, topology);
+    }
+
+    /**
+     * Load a board by its id: the name of a world, <corpus file>#<index> for a board of a
+     * BoardCorpus, or GEN<width>x<height>[:tornadoes[:seed]] for a generated board of any size,
+     * e.g. GEN16x256:600:1, or GEN16x256::1 for the default number of tornadoes
+     *
+     * @param id of the board
+     * @param topology of the board, or null to use the size of the board with the hex topology
+     * @return the board with the hints of the topology, indexed [y][x]
+     */
+    public static char[][] load(String id, Topology topology) {
+        if (!id.startsWith("GEN")) {
+            char[][] board = id.contains("#") ? BoardCorpus.load(id).toArray() : World.valueOf(id).map;
+            if (topology == null || topology instanceof HexTopology) {
+                return board;
+            }
+            // Keep the tornadoes of the world, with the hints of the other topology
+            return computeHints(board, topology);
+        }
+        String[] fields = id.substring("GEN".length()).split(":");
+        String[] size = fields[0].split("x");
+        int width = Integer.parseInt(size[0]);
+        int height = Integer.parseInt(size[1]);
+        if (topology == null) {
+            topology = new HexTopology(width, height);
+        }
+        // The worlds have about one tornado in six cells
+        int nTornadoes = fields.length > 1 && !fields[1].isEmpty() ? Integer.parseInt(fields[1]) : width * height / 6;
+        long seed = fields.length > 2 ? Long.parseLong(fields[2]) : 0;
+        return generate(topology, nTornadoes, new Random(seed));
+    }
+
+    /**
+     * Load a board by its id, as load does, without copying a board of a corpus.
+     * A hex board of a corpus is returned as the view on the mapped corpus itself;
+     * any other board is built as an array and wrapped.
+     *
+     * @param id of the board
+     * @param topology of the board, or null to use the size of the board with the hex topology
+     * @return the view of the board with the hints of the topology
+     */
+    public static BoardView loadView(String id, Topology topology) {
+        if (id.contains("#") && (topology == null || topology instanceof HexTopology)) {
+            return BoardCorpus.load(id);
+        }
+        return BoardView.of(load(id, topology));
+    }
+
+    /**
+     * Return the width and height of a board id without building the board
+     *
+     * @param id of the board
+     * @return {width, height}
+     */
+    public static int[] getSize(String id) {
+        if (id.contains("#")) {
+            BoardView board = BoardCorpus.load(id);
+            return new int[]{board.getWidth(), board.getHeight()};
+        }
+        if (!id.startsWith("GEN")) {
+            char[][] board = World.valueOf(id).map;
+            return new int[]{board[0].length, board.length};
+        }
+        String[] size = id.substring("GEN".length()).split(":")[0].split("x");
+        return new int[]{Integer.parseInt(size[0]), Integer.parseInt(size[1])};
+    }
+
+    /**
+     * Compute the hints of a board from its tornadoes
+     *
+     * @param board whose tornadoes are marked 't', indexed [y][x]
+     * @param topology of the board
+     * @return a new board with the same tornadoes and the hints of the topology
+     */
+    public static char[][] computeHints(char[][] board, Topology topology) {
+        int width = topology.getWidth();
+        int height = topology.getHeight();
+        int[] adjacency = topology.getAdjacency();
+        char[][] hints = new char[height][width];
+        for (int i = 0; i < width * height; i++) {
+            if (board[i / width][i % width] == 't') {
+                hints[i / width][i % width] = 't';
+                continue;
+            }
+            int nTornadoes = 0;
+            for (int j = topology.getStart(i); j < topology.getEnd(i); j++) {
+                if (board[adjacency[j] / width][adjacency[j] % width] == 't') {
+                    nTornadoes++;
+                }
+            }
+            hints[i / width][i % width] = (char) ('0' + nTornadoes);
+        }
+        return hints;
+    }
+}
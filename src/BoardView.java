@@ -0,0 +1,76 @@
+/**
+ * Read-only view of a board with its tornadoes and hints, which Game reads its cells from.
+ *
+ * A view can sit on a char[][] or directly on the bytes of a board corpus,
+ * so that boards do not have to be copied onto the heap before a game starts.
+ */
+public interface BoardView {
+
+    /**
+     * Getter
+     *
+     * @return the width of the board
+     */
+    int getWidth();
+
+    /**
+     * Getter
+     *
+     * @return the height of the board
+     */
+    int getHeight();
+
+    /**
+     * Return the content of a cell
+     *
+     * @param x
+     * @param y
+     * @return 't' for a tornado, otherwise the hint '0' to '9'
+     */
+    char get(int x, int y);
+
+    /**
+     * Copy the view into a char array
+     *
+     * @return the board, indexed [y][x]
+     */
+    default char[][] toArray() {
+        char[][] board = new char[getHeight()][getWidth()];
+        for (int y = 0; y < getHeight(); y++) {
+            for (int x = 0; x < getWidth(); x++) {
+                board[y][x] = get(x, y);
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Wrap a char array without copying it
+     *
+     * @param board indexed [y][x]
+     * @return the view
+     */
+    static BoardView of(char[][] board) {
+        return new BoardView() {
+            @Override
+            public int getWidth() {
+                return board[0].length;
+            }
+
+            @Override
+            public int getHeight() {
+                return board.length;
+            }
+
+            @Override
+            public char get(int x, int y) {
+                return board[y][x];
+            }
+
+            @Override
+            public char[][] toArray() {
+                return board;
+            }
+        };
+    }
+}
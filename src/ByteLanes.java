@@ -0,0 +1,63 @@
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Row operations of NeighbourCountKernel written with the Vector API, one whole vector of cells at a time.
+ *
+ * The API is still an incubating module, which the JVM only resolves when it is
+ * started with --add-modules jdk.incubator.vector. NeighbourCountKernel checks
+ * that the module is there before it loads this class, and keeps its scalar
+ * loops otherwise. The cells left over after the last whole vector of a row are
+ * done one by one.
+ */
+public class ByteLanes {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    /**
+     * Add the shifted source to the destination, dst[i] += src[i + shift] for i in [from, to)
+     *
+     * @param dst
+     * @param src
+     * @param shift from a cell to its neighbour
+     * @param from first cell
+     * @param to cell after the last
+     */
+    public static void add(byte[] dst, byte[] src, int shift, int from, int to) {
+        int i = from;
+        for (int upper = from + SPECIES.loopBound(to - from); i < upper; i += SPECIES.length()) {
+            ByteVector.fromArray(SPECIES, dst, i).add(ByteVector.fromArray(SPECIES, src, i + shift)).intoArray(dst, i);
+        }
+        for (; i < to; i++) {
+            dst[i] += src[i + shift];
+        }
+    }
+
+    /**
+     * Or the shifted source into the destination, dst[i] |= src[i + shift] for i in [from, to)
+     *
+     * @param dst
+     * @param src
+     * @param shift from a cell to its neighbour
+     * @param from first cell
+     * @param to cell after the last
+     */
+    public static void or(byte[] dst, byte[] src, int shift, int from, int to) {
+        int i = from;
+        for (int upper = from + SPECIES.loopBound(to - from); i < upper; i += SPECIES.length()) {
+            ByteVector.fromArray(SPECIES, dst, i).or(ByteVector.fromArray(SPECIES, src, i + shift)).intoArray(dst, i);
+        }
+        for (; i < to; i++) {
+            dst[i] |= src[i + shift];
+        }
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of bytes in a vector
+     */
+    public static int getLanes() {
+        return SPECIES.length();
+    }
+}
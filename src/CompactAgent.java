@@ -0,0 +1,574 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Agent for boards too large for the cells, lists and KB of Agent, whose heap grows with the frontier only.
+ *
+ * What the agent knows of the board is kept off the heap: 2 bits of state per
+ * cell (covered, flagged, uncovered, or uncovered and waiting to be checked) and
+ * the hint of every uncovered cell in 4 bits. Neighbours are found with the
+ * offsets of the topology, so there is no adjacency either. On the heap there
+ * are only the cells waiting to be checked and the frontier.
+ *
+ * SPS is run on every cell which is uncovered, or whose neighbours change, until
+ * no cell is left waiting. The agent then slides a window along the frontier, in
+ * board order: from each frontier cell, the frontier cells around it are added as
+ * long as their unproved neighbours fit in MAX_UNKNOWNS, and the models of these
+ * constraints are enumerated. A cell which is safe, or a tornado, in every model
+ * is played, and SPS runs again before the window moves on. A window sees only
+ * part of the frontier, so it proves less than a solver of the whole frontier, but
+ * whatever it proves is sound. When a whole pass proves nothing, the agent guesses
+ * the frontier cell which is a tornado in the fewest models of its window, or a
+ * cell away from the frontier if the density of the tornadoes left is lower.
+ */
+public class CompactAgent {
+
+    // States of a cell, in 2 bits
+    private static final int COVERED = 0;
+    private static final int FLAGGED = 1;
+    private static final int UNCOVERED = 2;
+    // Uncovered, and waiting for SPS
+    private static final int PENDING = 3;
+    // Unproved cells of a window
+    public static final int MAX_UNKNOWNS = 24;
+    // A window whose models take more nodes than this to enumerate proves nothing
+    public static final int MAX_NODES = 1 << 16;
+
+    private PackedBoard board;
+    private int width;
+    private int height;
+    // dx, dy of every neighbour
+    private int[] stencil;
+    // Cell -> its state, four cells to a byte
+    private ByteBuffer states;
+    // Cell -> its hint once uncovered, two cells to a byte
+    private ByteBuffer hints;
+    // Cells waiting for SPS, as a ring from pendingHead on. First in, first out, so that a
+    // cascade of free cells spreads as a wave, whose length is that of its edge, not its area.
+    private int[] pending;
+    private int pendingHead;
+    private int nPending;
+    // Uncovered cells left with unproved neighbours by SPS, in the order they were left.
+    // A cell may be in it twice, or be settled since, until it is compacted.
+    private int[] frontier;
+    private int nFrontier;
+    private int nUncovered;
+    private int nFlagged;
+    private int moves;
+    private boolean dead;
+    private HashMap<String, int[]> deductions;
+    // Next cell to look at for a guess away from the frontier
+    private int cursor;
+    // The safest frontier cell seen by the windows of the current pass, and its chance of a tornado
+    private int safestCell;
+    private double lowestRisk;
+    // The cells, constraints and models of the current window
+    private int[] unknowns;
+    private int nUnknowns;
+    private int[] constraints;
+    private int nConstraints;
+    private int nModels;
+    private long and;
+    private long or;
+    private int[] tornadoCounts;
+    // Measures of the heap the agent needed
+    private int peakPending;
+    private int peakFrontier;
+    private int windows;
+    private int abandoned;
+
+    /**
+     * Constructor
+     *
+     * @param board the game is played on
+     * @param stencil dx, dy of every neighbour
+     */
+    public CompactAgent(PackedBoard board, int[] stencil) {
+        this.board = board;
+        this.width = board.getWidth();
+        this.height = board.getHeight();
+        this.stencil = stencil;
+        long nCells = (long) width * height;
+        this.states = ByteBuffer.allocateDirect((int) ((nCells + 3) / 4));
+        this.hints = ByteBuffer.allocateDirect((int) ((nCells + 1) / 2));
+        this.pending = new int[64];
+        this.frontier = new int[64];
+        this.deductions = new HashMap<>();
+        this.unknowns = new int[MAX_UNKNOWNS];
+        this.constraints = new int[16];
+        this.tornadoCounts = new int[MAX_UNKNOWNS];
+    }
+
+    /**
+     * Play the game until the agent wins or uncovers a tornado
+     *
+     * @return the result of the game
+     */
+    public GameResult playGame() {
+        long start = System.nanoTime();
+        uncover(0, "HINT");
+        uncover(height / 2 * width + width / 2, "HINT");
+        while (!isGameOver()) {
+            runSPS();
+            if (!isGameOver() && !slideWindows()) {
+                guess();
+            }
+        }
+        HashMap<String, Integer> nDeductions = new HashMap<>();
+        for (String strategy : deductions.keySet()) {
+            nDeductions.put(strategy, deductions.get(strategy)[0]);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return new GameResult("compact", dead ? GameResult.Outcome.DEAD : GameResult.Outcome.ALIVE, moves, nDeductions, 0, 0,
+                System.nanoTime() - start, runtime.totalMemory() - runtime.freeMemory(), 0, 0);
+    }
+
+    /**
+     * Check whether the game is over
+     *
+     * @return true if a tornado was uncovered or every safe cell is
+     */
+    public boolean isGameOver() {
+        return dead || nUncovered == (long) width * height - board.getNumberOfTornadoes();
+    }
+
+    /**
+     * Getter
+     *
+     * @param index of the cell
+     * @return its state
+     */
+    private int getState(int index) {
+        return states.get(index >> 2) >> ((index & 3) << 1) & 3;
+    }
+
+    /**
+     * Setter
+     *
+     * @param index of the cell
+     * @param state its new state
+     */
+    private void setState(int index, int state) {
+        int shift = (index & 3) << 1;
+        states.put(index >> 2, (byte) (states.get(index >> 2) & ~(3 << shift) | state << shift));
+    }
+
+    /**
+     * Getter
+     *
+     * @param index of an uncovered cell
+     * @return its hint
+     */
+    private int getHint(int index) {
+        return hints.get(index >> 1) >> ((index & 1) << 2) & 15;
+    }
+
+    /**
+     * Return the neighbour of a cell at an offset of the stencil
+     *
+     * @param index of the cell
+     * @param k position of the offset in the stencil
+     * @return the index of the neighbour, or -1 if it is off the board
+     */
+    private int getNeighbour(int index, int k) {
+        int x = index % width + stencil[k];
+        int y = index / width + stencil[k + 1];
+        return x < 0 || y < 0 || x >= width || y >= height ? -1 : y * width + x;
+    }
+
+    /**
+     * Count the neighbours of a cell in a state
+     *
+     * @param index of the cell
+     * @param state to count
+     * @return the number of neighbours
+     */
+    private int count(int index, int state) {
+        int n = 0;
+        for (int k = 0; k < stencil.length; k += 2) {
+            int neighbour = getNeighbour(index, k);
+            if (neighbour >= 0 && getState(neighbour) == state) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Count a deduction
+     *
+     * @param strategy which made it
+     */
+    private void addDeduction(String strategy) {
+        deductions.computeIfAbsent(strategy, k -> new int[1])[0]++;
+    }
+
+    /**
+     * Uncover a covered cell, and let SPS check it and its uncovered neighbours
+     *
+     * @param index of the cell
+     * @param strategy which chose it
+     */
+    private void uncover(int index, String strategy) {
+        if (getState(index) != COVERED) {
+            return;
+        }
+        addDeduction(strategy);
+        moves++;
+        char hint = board.get(index % width, index / width);
+        if (hint == 't') {
+            dead = true;
+            return;
+        }
+        nUncovered++;
+        int shift = (index & 1) << 2;
+        hints.put(index >> 1, (byte) (hints.get(index >> 1) & ~(15 << shift) | (hint - '0') << shift));
+        push(index);
+        wakeNeighbours(index);
+    }
+
+    /**
+     * Flag a covered cell, and let SPS check its uncovered neighbours
+     *
+     * @param index of the cell
+     * @param strategy which proved it
+     */
+    private void flag(int index, String strategy) {
+        if (getState(index) != COVERED) {
+            return;
+        }
+        addDeduction(strategy);
+        moves++;
+        nFlagged++;
+        setState(index, FLAGGED);
+        wakeNeighbours(index);
+    }
+
+    /**
+     * Add a cell to the cells waiting for SPS
+     *
+     * @param index of the cell, which is uncovered
+     */
+    private void push(int index) {
+        setState(index, PENDING);
+        if (nPending == pending.length) {
+            int[] grown = new int[2 * nPending];
+            for (int i = 0; i < nPending; i++) {
+                grown[i] = pending[(pendingHead + i) % nPending];
+            }
+            pending = grown;
+            pendingHead = 0;
+        }
+        pending[(pendingHead + nPending++) % pending.length] = index;
+        peakPending = Math.max(peakPending, nPending);
+    }
+
+    /**
+     * Let SPS check the uncovered neighbours of a cell which has changed
+     *
+     * @param index of the cell
+     */
+    private void wakeNeighbours(int index) {
+        for (int k = 0; k < stencil.length; k += 2) {
+            int neighbour = getNeighbour(index, k);
+            if (neighbour >= 0 && getState(neighbour) == UNCOVERED) {
+                push(neighbour);
+            }
+        }
+    }
+
+    /**
+     * Run SPS on the cells waiting for it, in the order they were added, and on every cell it wakes, until none is left.
+     * A cell SPS cannot settle is added to the frontier.
+     */
+    public void runSPS() {
+        while (nPending > 0 && !dead) {
+            int index = pending[pendingHead];
+            pendingHead = (pendingHead + 1) % pending.length;
+            nPending--;
+            setState(index, UNCOVERED);
+            int nCovered = count(index, COVERED);
+            if (nCovered == 0) {
+                continue;
+            }
+            int remaining = getHint(index) - count(index, FLAGGED);
+            if (remaining == 0 || remaining == nCovered) {
+                String strategy = getHint(index) == 0 ? "FREE" : "SPS";
+                for (int k = 0; k < stencil.length && !dead; k += 2) {
+                    int neighbour = getNeighbour(index, k);
+                    if (neighbour < 0) {
+                        continue;
+                    }
+                    if (remaining == 0) {
+                        uncover(neighbour, strategy);
+                    } else {
+                        flag(neighbour, strategy);
+                    }
+                }
+                continue;
+            }
+            if (nFrontier == frontier.length) {
+                compactFrontier();
+                if (nFrontier > frontier.length / 2) {
+                    frontier = Arrays.copyOf(frontier, 2 * frontier.length);
+                }
+            }
+            frontier[nFrontier++] = index;
+            peakFrontier = Math.max(peakFrontier, nFrontier);
+        }
+    }
+
+    /**
+     * Sort the frontier into board order, and drop the cells which are in it twice or have been settled
+     */
+    private void compactFrontier() {
+        Arrays.sort(frontier, 0, nFrontier);
+        int n = 0;
+        for (int i = 0; i < nFrontier; i++) {
+            int index = frontier[i];
+            if ((n == 0 || frontier[n - 1] != index) && getState(index) == UNCOVERED && count(index, COVERED) > 0) {
+                frontier[n++] = index;
+            }
+        }
+        nFrontier = n;
+        if (frontier.length > 64 && n < frontier.length / 4) {
+            frontier = Arrays.copyOf(frontier, Math.max(64, 2 * n));
+        }
+    }
+
+    /**
+     * Slide the window once along the frontier, running SPS after every window which proves a cell
+     *
+     * @return true if a cell was proved
+     */
+    public boolean slideWindows() {
+        compactFrontier();
+        safestCell = -1;
+        lowestRisk = Double.MAX_VALUE;
+        boolean proved = false;
+        // SPS compacts the frontier as it grows, so the pass walks a copy
+        int[] anchors = Arrays.copyOf(frontier, nFrontier);
+        for (int i = 0; i < anchors.length && !isGameOver(); i++) {
+            int anchor = anchors[i];
+            if (getState(anchor) != UNCOVERED || count(anchor, COVERED) == 0) {
+                continue;
+            }
+            if (solveWindow(anchor)) {
+                proved = true;
+                runSPS();
+            }
+        }
+        return proved;
+    }
+
+    /**
+     * Solve the window around a frontier cell, and play the cells it proves
+     *
+     * @param anchor the frontier cell
+     * @return true if a cell was proved
+     */
+    private boolean solveWindow(int anchor) {
+        windows++;
+        nUnknowns = 0;
+        nConstraints = 0;
+        addConstraint(anchor);
+        // Grow the window from the constraints already in it, nearest first
+        for (int c = 0; c < nConstraints; c++) {
+            for (int k = 0; k < stencil.length; k += 2) {
+                int unknown = getNeighbour(constraints[c], k);
+                if (unknown < 0 || getState(unknown) != COVERED) {
+                    continue;
+                }
+                for (int l = 0; l < stencil.length; l += 2) {
+                    int next = getNeighbour(unknown, l);
+                    if (next >= 0 && getState(next) == UNCOVERED && !contains(constraints, nConstraints, next) && fits(next)) {
+                        addConstraint(next);
+                    }
+                }
+            }
+        }
+        // Cell -> the constraints around it, and constraint -> tornadoes left and cells not assigned yet
+        int[][] around = new int[nUnknowns][];
+        int[] remaining = new int[nConstraints];
+        int[] open = new int[nConstraints];
+        for (int u = 0; u < nUnknowns; u++) {
+            int[] found = new int[stencil.length / 2];
+            int n = 0;
+            for (int k = 0; k < stencil.length; k += 2) {
+                int neighbour = getNeighbour(unknowns[u], k);
+                int c = neighbour < 0 ? -1 : indexOf(constraints, nConstraints, neighbour);
+                if (c >= 0) {
+                    found[n++] = c;
+                }
+            }
+            around[u] = Arrays.copyOf(found, n);
+        }
+        for (int c = 0; c < nConstraints; c++) {
+            remaining[c] = getHint(constraints[c]) - count(constraints[c], FLAGGED);
+            open[c] = count(constraints[c], COVERED);
+        }
+        nModels = 0;
+        and = -1L;
+        or = 0;
+        Arrays.fill(tornadoCounts, 0);
+        ModelEnumerator enumerator = new ModelEnumerator(around, remaining, open);
+        enumerator.setMaxNodes(MAX_NODES);
+        if (!enumerator.enumerate(this::countModel) || nModels == 0) {
+            abandoned++;
+            return false;
+        }
+        boolean proved = false;
+        for (int u = 0; u < nUnknowns && !dead; u++) {
+            if ((or >> u & 1) == 0) {
+                uncover(unknowns[u], "WINDOW");
+                proved = true;
+            } else if ((and >> u & 1) == 1) {
+                flag(unknowns[u], "WINDOW");
+                proved = true;
+            } else if ((double) tornadoCounts[u] / nModels < lowestRisk) {
+                lowestRisk = (double) tornadoCounts[u] / nModels;
+                safestCell = unknowns[u];
+            }
+        }
+        return proved;
+    }
+
+    /**
+     * Check whether the unproved neighbours of an uncovered cell fit in the window
+     *
+     * @param index of the cell
+     * @return true if they do
+     */
+    private boolean fits(int index) {
+        int n = nUnknowns;
+        for (int k = 0; k < stencil.length; k += 2) {
+            int neighbour = getNeighbour(index, k);
+            if (neighbour >= 0 && getState(neighbour) == COVERED && !contains(unknowns, nUnknowns, neighbour)) {
+                n++;
+            }
+        }
+        return n <= MAX_UNKNOWNS;
+    }
+
+    /**
+     * Add an uncovered cell and its unproved neighbours to the window
+     *
+     * @param index of the cell
+     */
+    private void addConstraint(int index) {
+        if (nConstraints == constraints.length) {
+            constraints = Arrays.copyOf(constraints, 2 * nConstraints);
+        }
+        constraints[nConstraints++] = index;
+        for (int k = 0; k < stencil.length; k += 2) {
+            int neighbour = getNeighbour(index, k);
+            if (neighbour >= 0 && getState(neighbour) == COVERED && !contains(unknowns, nUnknowns, neighbour)) {
+                unknowns[nUnknowns++] = neighbour;
+            }
+        }
+    }
+
+    /**
+     * Check whether the first n values of an array contain a value
+     *
+     * @param values
+     * @param n
+     * @param value
+     * @return true if they do
+     */
+    private static boolean contains(int[] values, int n, int value) {
+        return indexOf(values, n, value) >= 0;
+    }
+
+    /**
+     * Return the position of a value in the first n values of an array
+     *
+     * @param values
+     * @param n
+     * @param value
+     * @return the position, or -1
+     */
+    private static int indexOf(int[] values, int n, int value) {
+        for (int i = 0; i < n; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Count a model of the window
+     *
+     * @param model the tornadoes of the model
+     * @return true, as every model is counted
+     */
+    private boolean countModel(long model) {
+        nModels++;
+        and &= model;
+        or |= model;
+        for (int v = 0; v < nUnknowns; v++) {
+            tornadoCounts[v] += (int) (model >> v & 1);
+        }
+        return true;
+    }
+
+    /**
+     * Uncover the safest frontier cell seen by the last pass, or a cell away from the frontier
+     * if the density of the tornadoes left is lower
+     */
+    private void guess() {
+        long nCovered = (long) width * height - nUncovered - nFlagged;
+        double density = (double) (board.getNumberOfTornadoes() - nFlagged) / nCovered;
+        int cell = safestCell;
+        if (cell < 0 || density < lowestRisk) {
+            int away = findCoveredCell(true);
+            if (away >= 0) {
+                cell = away;
+            }
+        }
+        if (cell < 0) {
+            cell = findCoveredCell(false);
+        }
+        uncover(cell, "GUESS");
+    }
+
+    /**
+     * Find a covered cell from the cursor on, wrapping around the board once
+     *
+     * @param awayFromFrontier true to skip the cells next to an uncovered cell
+     * @return the index of the cell, or -1 if there is none
+     */
+    private int findCoveredCell(boolean awayFromFrontier) {
+        int nCells = width * height;
+        for (int i = 0; i < nCells; i++) {
+            int index = (cursor + i) % nCells;
+            if (getState(index) == COVERED && (!awayFromFrontier || count(index, UNCOVERED) == 0)) {
+                cursor = index;
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the bytes of direct memory of the agent's board and the game's
+     */
+    public long getOffHeapBytes() {
+        return states.capacity() + hints.capacity() + board.getOffHeapBytes();
+    }
+
+    /**
+     * Override toString
+     *
+     * @return the memory the agent needed and the windows it solved
+     */
+    @Override
+    public String toString() {
+        return "Compact offHeapKB=" + (getOffHeapBytes() >> 10) + " peakPending=" + peakPending + " peakFrontier=" + peakFrontier
+                + " windows=" + windows + " abandoned=" + abandoned;
+    }
+}
@@ -0,0 +1,69 @@
+import java.util.ArrayList;
+import java.util.concurrent.RecursiveTask;
+
+import org.logicng.datastructures.Tristate;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.io.parsers.ParserException;
+import org.logicng.io.parsers.PropositionalParser;
+import org.logicng.solvers.MiniSat;
+import org.logicng.solvers.SATSolver;
+
+/**
+ * Fork/join task which probes the cells of one frontier component with its own solver.
+ *
+ * Without the tornado count the components of the KB are independent, so each
+ * one can be encoded and solved on another thread. FormulaFactory is not
+ * thread-safe, so every task has its own. The task only reads the board of the
+ * agent, which does not change while a move is being searched. A clause which
+ * does not parse is thrown from the task as the cause of an IllegalStateException,
+ * so that join carries it back to the agent.
+ */
+public class ComponentProbe extends RecursiveTask<Cell> {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient Agent agent;
+    private transient ArrayList<Cell> component;
+    private transient ArrayList<Cell> unknowns;
+
+    /**
+     * Constructor
+     *
+     * @param agent whose board is read
+     * @param component frontier cells
+     * @param unknowns unproved neighbours of the component, in board order
+     */
+    public ComponentProbe(Agent agent, ArrayList<Cell> component, ArrayList<Cell> unknowns) {
+        this.agent = agent;
+        this.component = component;
+        this.unknowns = unknowns;
+    }
+
+    /**
+     * Encode the component and probe its unknowns in board order
+     *
+     * @return the first cell which cannot be a tornado, or null if there is none
+     */
+    @Override
+    protected Cell compute() {
+        FormulaFactory f = new FormulaFactory();
+        PropositionalParser p = new PropositionalParser(f);
+        SATSolver miniSat = MiniSat.miniSat(f);
+        try {
+            for (Cell cell : component) {
+                String clause = agent.buildClause(cell);
+                if (!clause.isEmpty()) {
+                    miniSat.add(p.parse(clause));
+                }
+            }
+        } catch (ParserException e) {
+            throw new IllegalStateException(e);
+        }
+        for (Cell cell : unknowns) {
+            if (miniSat.sat(f.literal(Agent.getVariable(cell), true)) == Tristate.FALSE) {
+                return cell;
+            }
+        }
+        return null;
+    }
+}
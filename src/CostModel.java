@@ -0,0 +1,189 @@
+import java.util.HashMap;
+
+/**
+ * Online model of the cost of the solver stages of the adaptive agent.
+ *
+ * Every stage keeps a least-squares fit of its wall time against the features of
+ * the frontier it was run on: the number of unproved cells next to it, the number
+ * of frontier cells, and the square of the number of unproved cells of its largest
+ * component, which the cost of the solvers grows with fastest. The fit is updated
+ * after every call, so it follows the board and the JIT as the game goes on. A
+ * stage which has been run fewer than MIN_SAMPLES times is tried before any other.
+ * The model also keeps the share of calls in which a stage decided the move.
+ */
+public class CostModel {
+
+    // A stage is tried this many times before its predictions are trusted
+    public static final int MIN_SAMPLES = 3;
+    private static final int N_FEATURES = 4;
+    // Keeps the fit solvable while the features are still collinear
+    private static final double RIDGE = 1e-3;
+
+    // Stage -> the sums of x x^T and x y of its calls, y in milliseconds
+    private HashMap<String, double[][]> products;
+    private HashMap<String, double[]> targets;
+    // Stage -> {calls, calls which decided the move}
+    private HashMap<String, int[]> counts;
+    // Stage -> total milliseconds
+    private HashMap<String, Double> totals;
+
+    /**
+     * Constructor
+     */
+    public CostModel() {
+        this.products = new HashMap<>();
+        this.targets = new HashMap<>();
+        this.counts = new HashMap<>();
+        this.totals = new HashMap<>();
+    }
+
+    /**
+     * Return the features of a frontier
+     *
+     * @param nUnknowns the number of unproved cells next to the frontier
+     * @param nFrontierCells the number of frontier cells
+     * @param largest the number of unproved cells of the largest component
+     * @return the feature vector, with a constant first
+     */
+    public static double[] getFeatures(int nUnknowns, int nFrontierCells, int largest) {
+        return new double[]{1, nUnknowns, nFrontierCells, (double) largest * largest};
+    }
+
+    /**
+     * Record a call of a stage
+     *
+     * @param stage the name of the stage
+     * @param features of the frontier it was run on
+     * @param nanos its wall time
+     * @param decided true if it found a safe cell or showed there is none
+     */
+    public synchronized void record(String stage, double[] features, long nanos, boolean decided) {
+        double[][] product = products.computeIfAbsent(stage, k -> new double[N_FEATURES][N_FEATURES]);
+        double[] target = targets.computeIfAbsent(stage, k -> new double[N_FEATURES]);
+        double ms = nanos / 1e6;
+        for (int i = 0; i < N_FEATURES; i++) {
+            for (int j = 0; j < N_FEATURES; j++) {
+                product[i][j] += features[i] * features[j];
+            }
+            target[i] += features[i] * ms;
+        }
+        int[] count = counts.computeIfAbsent(stage, k -> new int[2]);
+        count[0]++;
+        if (decided) {
+            count[1]++;
+        }
+        totals.merge(stage, ms, Double::sum);
+    }
+
+    /**
+     * Check whether a stage has been run often enough for its predictions to be trusted
+     *
+     * @param stage the name of the stage
+     * @return true if it has
+     */
+    public synchronized boolean isTrained(String stage) {
+        int[] count = counts.get(stage);
+        return count != null && count[0] >= MIN_SAMPLES;
+    }
+
+    /**
+     * Predict the wall time of a stage, by solving the ridge-regularised normal equations of its fit
+     *
+     * @param stage the name of the stage
+     * @param features of the frontier
+     * @return the predicted milliseconds, 0 if the stage has not been trained
+     */
+    public synchronized double predict(String stage, double[] features) {
+        if (!isTrained(stage)) {
+            return 0;
+        }
+        double[][] a = new double[N_FEATURES][N_FEATURES + 1];
+        for (int i = 0; i < N_FEATURES; i++) {
+            System.arraycopy(products.get(stage)[i], 0, a[i], 0, N_FEATURES);
+            a[i][i] += RIDGE * (1 + a[i][i]);
+            a[i][N_FEATURES] = targets.get(stage)[i];
+        }
+        // Gaussian elimination with partial pivoting
+        for (int column = 0; column < N_FEATURES; column++) {
+            int pivot = column;
+            for (int row = column + 1; row < N_FEATURES; row++) {
+                if (Math.abs(a[row][column]) > Math.abs(a[pivot][column])) {
+                    pivot = row;
+                }
+            }
+            double[] swap = a[column];
+            a[column] = a[pivot];
+            a[pivot] = swap;
+            for (int row = column + 1; row < N_FEATURES; row++) {
+                double factor = a[row][column] / a[column][column];
+                for (int k = column; k <= N_FEATURES; k++) {
+                    a[row][k] -= factor * a[column][k];
+                }
+            }
+        }
+        double[] weights = new double[N_FEATURES];
+        for (int row = N_FEATURES - 1; row >= 0; row--) {
+            double sum = a[row][N_FEATURES];
+            for (int k = row + 1; k < N_FEATURES; k++) {
+                sum -= a[row][k] * weights[k];
+            }
+            weights[row] = sum / a[row][row];
+        }
+        double prediction = 0;
+        for (int i = 0; i < N_FEATURES; i++) {
+            prediction += weights[i] * features[i];
+        }
+        // The fit can go below 0 on frontiers far from those it was made on
+        return Math.max(prediction, 0);
+    }
+
+    /**
+     * Return the share of the calls of a stage which decided the move, with one success and
+     * one failure added so that a stage is neither trusted nor written off after a single call
+     *
+     * @param stage the name of the stage
+     * @return the estimated chance of deciding a move
+     */
+    public synchronized double getDecisionRate(String stage) {
+        int[] count = counts.getOrDefault(stage, new int[2]);
+        return (count[1] + 1.0) / (count[0] + 2.0);
+    }
+
+    /**
+     * Return the stage with the lowest predicted wall time, an untrained one first
+     *
+     * @param stages the names of the stages which can decide the move
+     * @param features of the frontier
+     * @return the name of the stage
+     */
+    public synchronized String choose(String[] stages, double[] features) {
+        String best = null;
+        double lowest = Double.MAX_VALUE;
+        for (String stage : stages) {
+            if (!isTrained(stage)) {
+                return stage;
+            }
+            double cost = predict(stage, features);
+            if (cost < lowest) {
+                lowest = cost;
+                best = stage;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Override toString
+     *
+     * @return the calls, mean milliseconds and decision rate of every stage
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder("Costs");
+        for (String stage : counts.keySet()) {
+            int[] count = counts.get(stage);
+            builder.append(String.format(" %s(calls=%d meanMs=%.2f decided=%d)", stage, count[0], totals.get(stage) / count[0], count[1]));
+        }
+        return builder.toString();
+    }
+}
@@ -1,3 +1,4 @@
+import org.logicng.formulas.FType;
 import org.logicng.formulas.Formula;
 import org.logicng.formulas.Literal;
 
@@ -8,7 +9,12 @@ import java.util.SortedSet;
 
 public class DIMACS {
 
-    private HashMap<String, Integer> literals;
+    // Names of the variables which LogicNG introduces for CNF and cardinality encodings
+    private static final String AUX_PREFIX = "@RESERVED_";
+
+    private HashMap<String, Integer> literals = new HashMap<>();
+    // The number of variables encoded so far
+    private int nVariables;
 
     /**
      * Build the format of DIMACS
@@ -18,14 +24,31 @@ public class DIMACS {
      */
     public int[][] buildDIMACS(Formula formula) {
         literals = new HashMap<>();
+        nVariables = 0;
+        return appendDIMACS(formula);
+    }
+
+    /**
+     * Build the format of DIMACS, keeping the variables encoded by earlier calls
+     *
+     * @param formula a logic formula
+     * @return CNF clauses which is DIMACS format
+     */
+    public int[][] appendDIMACS(Formula formula) {
         ArrayList<int[]> clauses = new ArrayList<>();
         // Convert the formula into CNF
         Formula cnf = formula.cnf();
         encodeLiterals(cnf.literals());
-        Iterator<Formula> iterator = cnf.iterator();
-        while (iterator.hasNext()) {
-            clauses.add(getClause(iterator.next()));
+        if (cnf.type() == FType.AND) {
+            Iterator<Formula> iterator = cnf.iterator();
+            while (iterator.hasNext()) {
+                clauses.add(getClause(iterator.next()));
+            }
+        } else if (cnf.type() != FType.TRUE) {
+            // A single clause or literal is not wrapped in a conjunction
+            clauses.add(getClause(cnf));
         }
+        forgetAuxiliaryVariables(cnf);
         int[][] clausesArray = new int[clauses.size()][];
         for (int i = 0; i < clauses.size(); i++) {
             int[] singleClause = clauses.get(i);
@@ -55,6 +78,22 @@ public class DIMACS {
         return literals;
     }
 
+    /**
+     * Forget the auxiliary variables of the CNF transformation once its clauses are built.
+     * They only occur in the formula they were made for, and a FormulaFactory which has
+     * been cleared hands out the same names again, so every formula gets fresh ones.
+     *
+     * @param cnf
+     */
+    private void forgetAuxiliaryVariables(Formula cnf) {
+        for (Literal literal : cnf.literals()) {
+            if (literal.name().startsWith(AUX_PREFIX)) {
+                literals.remove(literal.name());
+                literals.remove("~" + literal.name());
+            }
+        }
+    }
+
     /**
      * Encode Literals
      *
@@ -81,7 +120,7 @@ public class DIMACS {
                 if (literals.get(positiveLiteral) != null) {
                     literals.put(literal, literals.get(positiveLiteral) * (-1));
                 } else {
-                    literals.put(positiveLiteral, literals.size() + 1);
+                    literals.put(positiveLiteral, ++nVariables);
                     literals.put(literal, literals.get(positiveLiteral) * (-1));
                 }
             } else {
@@ -96,7 +135,7 @@ public class DIMACS {
                 if (literals.get(literal) != null) {
                     literals.put(literal, literals.get(negativeLiteral) * (-1));
                 } else {
-                    literals.put(literal, literals.size() + 1);
+                    literals.put(literal, ++nVariables);
                     literals.put(negativeLiteral, literals.get(literal) * (-1));
                 }
             } else {
@@ -109,6 +148,15 @@ public class DIMACS {
     }
 
 
+    /**
+     * Getter
+     *
+     * @return the number of variables
+     */
+    public int getNumberOfVariables() {
+        return nVariables;
+    }
+
     /**
      * Getter
      *
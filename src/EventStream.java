@@ -0,0 +1,126 @@
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Streams the events of a game from the agent thread to any number of listeners.
+ *
+ * The agent publishes into a ring buffer without locks and without ever waiting:
+ * a slot is written and then the published counter is advanced. Every listener
+ * runs on its own daemon thread with its own read position. A listener which
+ * falls more than a ring behind skips the events it has lost and counts them as
+ * dropped, so a slow dashboard can never slow the solver down.
+ */
+public class EventStream {
+
+    private AtomicReferenceArray<GameEvent> ring;
+    private int mask;
+    // The number of events published so far, written only by the agent thread
+    private AtomicLong published;
+    private volatile boolean closed;
+    private ArrayList<Thread> consumers;
+    // Events skipped by listeners which fell behind
+    private AtomicLong dropped;
+
+    /**
+     * Constructor
+     *
+     * @param capacity of the ring, rounded up to a power of two
+     */
+    public EventStream(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.published = new AtomicLong();
+        this.consumers = new ArrayList<>();
+        this.dropped = new AtomicLong();
+    }
+
+    /**
+     * Subscribe a listener to the events published from now on
+     *
+     * @param listener
+     */
+    public synchronized void subscribe(GameListener listener) {
+        long start = published.get();
+        Thread thread = new Thread(() -> consume(listener, start), "events-" + consumers.size());
+        thread.setDaemon(true);
+        consumers.add(thread);
+        thread.start();
+    }
+
+    /**
+     * Publish an event. Must only be called from a single thread.
+     *
+     * @param event
+     */
+    public void publish(GameEvent event) {
+        long sequence = published.get();
+        ring.set((int) sequence & mask, event);
+        published.set(sequence + 1);
+    }
+
+    /**
+     * Deliver the events to a listener until the stream is closed and drained
+     *
+     * @param listener
+     * @param next the sequence of the first event to deliver
+     */
+    private void consume(GameListener listener, long next) {
+        int idle = 0;
+        while (true) {
+            long available = published.get();
+            if (next == available) {
+                if (closed && next == published.get()) {
+                    break;
+                }
+                // Spin briefly, then park, so that an idle listener costs no CPU
+                if (++idle < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(100000);
+                }
+                continue;
+            }
+            idle = 0;
+            if (available - next > mask) {
+                dropped.addAndGet(available - mask - 1 - next);
+                next = available - mask - 1;
+            }
+            GameEvent event = ring.get((int) next & mask);
+            // The slot may have been reused while it was read
+            if (published.get() - next > mask) {
+                continue;
+            }
+            listener.onEvent(event);
+            next++;
+        }
+        listener.onClose();
+    }
+
+    /**
+     * Close the stream and wait for the listeners to handle every event still in the ring
+     */
+    public synchronized void close() {
+        closed = true;
+        for (Thread thread : consumers) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                System.out.println("InterruptedException: " + e.getMessage());
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of events skipped by listeners which fell behind
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,126 @@
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Variable;
+import org.logicng.io.parsers.ParserException;
+import org.logicng.io.parsers.PropositionalParser;
+import org.logicng.knowledgecompilation.bdds.BDD;
+import org.logicng.knowledgecompilation.bdds.BDDFactory;
+import org.logicng.knowledgecompilation.bdds.jbuddy.BDDKernel;
+
+/**
+ * Compiles each component of the frontier into a BDD and reads the exact chance
+ * of a tornado in every one of its cells off the model counts.
+ *
+ * A cell is safe exactly when its chance is 0, so one compilation answers every
+ * probe of the component. Compilations are cached by a key which describes the
+ * constraints of the component, so a component which has not changed since the
+ * last move is neither encoded nor compiled again.
+ * Entries which were not used during a move are dropped at the start of the next.
+ */
+public class FrontierCompiler {
+
+    private FormulaFactory f;
+    private PropositionalParser p;
+    // Key of a component -> variable -> chance of a tornado
+    private HashMap<String, HashMap<String, Double>> cache;
+    // Entries used since the last startMove
+    private HashMap<String, HashMap<String, Double>> used;
+    private int compilations;
+    private int hits;
+
+    /**
+     * Constructor
+     */
+    public FrontierCompiler() {
+        this.f = new FormulaFactory();
+        this.p = new PropositionalParser(f);
+        this.cache = new HashMap<>();
+        this.used = new HashMap<>();
+    }
+
+    /**
+     * Start a new move, dropping the components which did not occur in the last one
+     */
+    public void startMove() {
+        cache = used;
+        used = new HashMap<>();
+        // Only probabilities are cached, so the formulas can go
+        if (f.statistics().formulas() > Agent.FACTORY_LIMIT) {
+            f.clear();
+        }
+    }
+
+    /**
+     * Return the chance of a tornado in every cell of a component
+     *
+     * @param key which identifies the constraints of the component
+     * @param component builds the formula of the component on a cache miss
+     * @param variables of the component in board order, which is a good BDD variable order
+     * @return variable -> chance of a tornado, which is 0 for a safe cell
+     * @throws ParserException
+     */
+    public HashMap<String, Double> getProbabilities(String key, Supplier<String> component, ArrayList<String> variables) throws ParserException {
+        HashMap<String, Double> probabilities = used.get(key);
+        if (probabilities == null) {
+            probabilities = cache.get(key);
+            if (probabilities == null) {
+                probabilities = compile(component.get(), variables);
+                compilations++;
+            } else {
+                hits++;
+            }
+            used.put(key, probabilities);
+        }
+        return probabilities;
+    }
+
+    /**
+     * Compile a component and count its models with and without each tornado
+     *
+     * @param component the formula of the component
+     * @param variables of the component in board order
+     * @return variable -> chance of a tornado
+     * @throws ParserException
+     */
+    private HashMap<String, Double> compile(String component, ArrayList<String> variables) throws ParserException {
+        Formula formula = p.parse(component);
+        ArrayList<Variable> order = new ArrayList<>();
+        for (String variable : variables) {
+            order.add(f.variable(variable));
+        }
+        BDDKernel kernel = new BDDKernel(f, order, 1000, 1000);
+        BDD bdd = BDDFactory.build(formula, kernel);
+        BigInteger total = bdd.modelCount();
+        HashMap<String, Double> probabilities = new HashMap<>();
+        for (Variable variable : order) {
+            if (total.signum() == 0) {
+                // A contradictory component, so anything is provable
+                probabilities.put(variable.name(), 0.0);
+                continue;
+            }
+            BigInteger tornado = bdd.and(BDDFactory.build(variable, kernel)).modelCount();
+            probabilities.put(variable.name(), tornado.doubleValue() / total.doubleValue());
+        }
+        return probabilities;
+    }
+
+    /**
+     * Override toString
+     *
+     * @return the number of compilations and cache hits
+     */
+    @Override
+    public String toString() {
+        int nCells = 0;
+        for (Map<String, Double> entry : used.values()) {
+            nCells += entry.size();
+        }
+        return "Compiler compilations=" + compilations + " hits=" + hits + " cells=" + nCells;
+    }
+}
@@ -0,0 +1,264 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Scores the guesses of an agent by how safe they are and how much they reveal.
+ *
+ * Every small component of the frontier is solved by enumerating its models,
+ * each weighted by the density of the tornadoes left, which gives the chance of a
+ * tornado in each of its unproved cells. For a cell which turns out safe, every
+ * hint it could show is then looked ahead: the models which agree with the hint
+ * fix some more cells of the component, and its unproved neighbours outside the
+ * component are all safe or all tornadoes when the hint leaves no choice. The
+ * expected number of cells fixed this way is the gain of the cell.
+ *
+ * The models of a component depend only on its constraints, so they are cached
+ * between the guesses of a game like the compilations of FrontierCompiler, and
+ * every guess has a time limit after which the components left are not scored.
+ */
+public class GainPolicy {
+
+    // Larger components are not enumerated, and their cells keep the estimate of the agent
+    public static final int MAX_UNKNOWNS = 24;
+    // A component with more models than this is not scored
+    public static final int MAX_MODELS = 1 << 16;
+    // Cells whose chance of being safe is this close to the safest cell are compared by their gain
+    public static final double TOLERANCE = 0.01;
+
+    private long timeMs;
+    private long deadline;
+    // Key of a component -> {chance of a tornado, gain} of every unproved cell
+    private HashMap<String, double[][]> cache;
+    // Entries used since the last startGuess
+    private HashMap<String, double[][]> used;
+    // Models of the component being enumerated, as bit masks over its unproved cells
+    private long[] models;
+    private int nModels;
+    private int guesses;
+    private int evaluations;
+    private int hits;
+    private int timeouts;
+
+    /**
+     * Constructor
+     *
+     * @param timeMs the time limit of a guess in milliseconds
+     */
+    public GainPolicy(long timeMs) {
+        this.timeMs = timeMs;
+        this.cache = new HashMap<>();
+        this.used = new HashMap<>();
+        this.models = new long[64];
+    }
+
+    /**
+     * Start a new guess, dropping the components which did not occur in the last one
+     */
+    public void startGuess() {
+        cache = used;
+        used = new HashMap<>();
+        deadline = System.nanoTime() + timeMs * 1000000;
+        guesses++;
+    }
+
+    /**
+     * Check whether the time of the current guess has run out
+     *
+     * @return true if it has
+     */
+    public boolean isExhausted() {
+        return System.nanoTime() > deadline;
+    }
+
+    /**
+     * Return the chance of a tornado and the gain of every unproved cell of a component
+     *
+     * @param key which identifies the constraints of the component and the density
+     * @param members frontier cell -> its unproved neighbours, by position
+     * @param remaining frontier cell -> tornadoes still to place around it
+     * @param adjacent unproved cell -> its unproved neighbours in the component, by position
+     * @param outside unproved cell -> the number of its unproved neighbours outside the component
+     * @param density chance of a tornado in a cell nothing is known about, between 0 and 1
+     * @return {chances, gains} by position, or null if the component could not be solved in time
+     */
+    public double[][] score(String key, int[][] members, int[] remaining, int[][] adjacent, int[] outside, double density) {
+        double[][] scores = used.get(key);
+        if (scores == null) {
+            scores = cache.get(key);
+            if (scores == null) {
+                scores = evaluate(members, remaining, adjacent, outside, density);
+                if (scores == null) {
+                    timeouts++;
+                    return null;
+                }
+                evaluations++;
+            } else {
+                hits++;
+            }
+            used.put(key, scores);
+        }
+        return scores;
+    }
+
+    /**
+     * Enumerate the models of a component and score its unproved cells
+     *
+     * @param members frontier cell -> its unproved neighbours, by position
+     * @param remaining frontier cell -> tornadoes still to place around it
+     * @param adjacent unproved cell -> its unproved neighbours in the component, by position
+     * @param outside unproved cell -> the number of its unproved neighbours outside the component
+     * @param density chance of a tornado in a cell nothing is known about
+     * @return {chances, gains} by position, or null if there are too many models or the time ran out
+     */
+    private double[][] evaluate(int[][] members, int[] remaining, int[][] adjacent, int[] outside, double density) {
+        int n = adjacent.length;
+        int[][] constraints = new int[n][];
+        int[] nConstraints = new int[n];
+        for (int[] member : members) {
+            for (int u : member) {
+                nConstraints[u]++;
+            }
+        }
+        for (int u = 0; u < n; u++) {
+            constraints[u] = new int[nConstraints[u]];
+            nConstraints[u] = 0;
+        }
+        int[] open = new int[members.length];
+        for (int c = 0; c < members.length; c++) {
+            for (int u : members[c]) {
+                constraints[u][nConstraints[u]++] = c;
+            }
+            open[c] = members[c].length;
+        }
+        nModels = 0;
+        ModelEnumerator enumerator = new ModelEnumerator(constraints, remaining.clone(), open);
+        enumerator.setDeadline(deadline);
+        if (!enumerator.enumerate(this::addModel)) {
+            return null;
+        }
+        double[] chances = new double[n];
+        double[] gains = new double[n];
+        if (nModels == 0) {
+            // A contradictory component has no models, so anything is provable, as for the solvers
+            return new double[][]{chances, gains};
+        }
+        long all = (1L << n) - 1;
+        // Tornadoes are weighted by the density, as the tornadoes left fall on some cells or others
+        double odds = density / (1 - density);
+        double[] weights = new double[nModels];
+        double total = 0;
+        long and = all;
+        long or = 0;
+        for (int m = 0; m < nModels; m++) {
+            weights[m] = Math.pow(odds, Long.bitCount(models[m]));
+            total += weights[m];
+            and &= models[m];
+            or |= models[m];
+        }
+        // Cells which every model already agrees on are not new deductions
+        long settled = ~(and ^ or) & all;
+        for (int u = 0; u < n; u++) {
+            double tornado = 0;
+            for (int m = 0; m < nModels; m++) {
+                if ((models[m] >> u & 1) == 1) {
+                    tornado += weights[m];
+                }
+            }
+            chances[u] = tornado / total;
+            gains[u] = getGain(u, adjacent[u], outside[u], weights, total - tornado, settled, all, density);
+        }
+        return new double[][]{chances, gains};
+    }
+
+    /**
+     * Return the expected number of cells which the hint of a cell fixes, if it is safe
+     *
+     * @param u position of the cell
+     * @param adjacent its unproved neighbours in the component
+     * @param outside the number of its unproved neighbours outside the component
+     * @param weights of the models
+     * @param safeWeight the weight of the models in which the cell is safe
+     * @param settled cells which every model agrees on
+     * @param all every cell of the component
+     * @param density chance of a tornado in a cell outside the component
+     * @return the gain
+     */
+    private double getGain(int u, int[] adjacent, int outside, double[] weights, double safeWeight, long settled, long all, double density) {
+        if (safeWeight <= 0) {
+            return 0;
+        }
+        long around = 0;
+        for (int v : adjacent) {
+            around |= 1L << v;
+        }
+        // Chance of k tornadoes among the neighbours outside the component
+        double[] binomial = new double[outside + 1];
+        for (int k = 0; k <= outside; k++) {
+            binomial[k] = Math.exp(Statistics.logBinomial(outside, k)) * Math.pow(density, k) * Math.pow(1 - density, outside - k);
+        }
+        // By the number of tornadoes the hint shows beyond the flagged ones: the weight of the
+        // models which show it, the cells they agree on, and the outside tornadoes they allow
+        int nHints = adjacent.length + outside + 1;
+        double[] hintWeights = new double[nHints];
+        long[] ors = new long[nHints];
+        long[] ands = new long[nHints];
+        int[] fewest = new int[nHints];
+        int[] most = new int[nHints];
+        Arrays.fill(ands, all);
+        Arrays.fill(fewest, Integer.MAX_VALUE);
+        Arrays.fill(most, -1);
+        for (int m = 0; m < nModels; m++) {
+            if ((models[m] >> u & 1) == 1) {
+                continue;
+            }
+            int inside = Long.bitCount(models[m] & around);
+            for (int k = 0; k <= outside; k++) {
+                int hint = inside + k;
+                hintWeights[hint] += weights[m] * binomial[k];
+                ors[hint] |= models[m];
+                ands[hint] &= models[m];
+                fewest[hint] = Math.min(fewest[hint], k);
+                most[hint] = Math.max(most[hint], k);
+            }
+        }
+        double gain = 0;
+        for (int hint = 0; hint < nHints; hint++) {
+            if (hintWeights[hint] == 0) {
+                continue;
+            }
+            int fixed = Long.bitCount(~(ors[hint] ^ ands[hint]) & all & ~settled & ~(1L << u));
+            if (outside > 0 && fewest[hint] == most[hint] && (fewest[hint] == 0 || fewest[hint] == outside)) {
+                fixed += outside;
+            }
+            gain += hintWeights[hint] * fixed;
+        }
+        return gain / safeWeight;
+    }
+
+    /**
+     * Keep a model of the component being enumerated
+     *
+     * @param model the tornadoes of the model
+     * @return false if there are too many models to score the component
+     */
+    private boolean addModel(long model) {
+        if (nModels == MAX_MODELS) {
+            return false;
+        }
+        if (nModels == models.length) {
+            models = Arrays.copyOf(models, 2 * nModels);
+        }
+        models[nModels++] = model;
+        return true;
+    }
+
+    /**
+     * Override toString
+     *
+     * @return the number of guesses, component evaluations, cache hits and components given up
+     */
+    @Override
+    public String toString() {
+        return "Guesses guesses=" + guesses + " evaluations=" + evaluations + " hits=" + hits + " timeouts=" + timeouts;
+    }
+}
@@ -2,42 +2,86 @@ import java.util.ArrayList;
 
 public class Game {
 
-    private char[][] board;
+    private BoardView board;
+    private Topology topology;
     private boolean isGameOver;
     private boolean isGameWon;
     private boolean isSatisfiable;
-    // Cells on the board
-    private ArrayList<Cell> cells;
-    // Covered cells on the board
-    private ArrayList<Cell> coveredCells;
+    // The number of tornadoes on the board
+    private int nTornadoes;
+    // Cells on the board, by index y * width + x
+    private Cell[] cells;
+    // Covered cells, and cells flagged as tornadoes by the player, by index
+    private boolean[] covered;
+    private boolean[] flagged;
+    // The number of covered cells which are not tornadoes, so that a win is noticed without a scan
+    private int nCoveredSafe;
 
     /**
-     * Constructor
+     * Constructor for the hexagonal board
      *
      * @param worldMap
      */
     public Game(char[][] worldMap) {
-        this.board = worldMap;
+        this(worldMap, new HexTopology(worldMap[0].length, worldMap.length));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param worldMap
+     * @param topology of the board
+     */
+    public Game(char[][] worldMap, Topology topology) {
+        this(BoardView.of(worldMap), topology);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param board which the cells are read from, e.g. a view on a board corpus
+     * @param topology of the board
+     */
+    public Game(BoardView board, Topology topology) {
+        this.board = board;
+        this.topology = topology;
         this.isGameOver = false;
         this.isGameWon = false;
-        this.cells = new ArrayList<>();
-        this.coveredCells = new ArrayList<>();
+        this.cells = new Cell[board.getWidth() * board.getHeight()];
+        this.covered = new boolean[cells.length];
+        this.flagged = new boolean[cells.length];
         initCells();
     }
 
     /**
-     * Initialises the cells and coveredCells
+     * Initialises the cells, all covered
      */
     private void initCells() {
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board.length; j++) {
-                Cell cell = new Cell(i, j, board[j][i]);
-                cells.add(cell);
-                coveredCells.add(cell);
+        for (int j = 0; j < board.getHeight(); j++) {
+            for (int i = 0; i < board.getWidth(); i++) {
+                Cell cell = new Cell(i, j, board.get(i, j));
+                cells[topology.index(i, j)] = cell;
+                covered[topology.index(i, j)] = true;
+                if (cell.getHint() == 't') {
+                    nTornadoes++;
+                } else {
+                    nCoveredSafe++;
+                }
             }
         }
     }
 
+    /**
+     * Check whether a position is on the board
+     *
+     * @param x
+     * @param y
+     * @return true if it is
+     */
+    private boolean isOnBoard(int x, int y) {
+        return x >= 0 && y >= 0 && x < board.getWidth() && y < board.getHeight();
+    }
+
     /**
      * Return proved cell.
      *
@@ -46,48 +90,130 @@ public class Game {
      * @return proved cell
      */
     public Cell uncoverCell(int x, int y, String type) {
-        for (Cell cell: cells) {
-            if (cell.x == x && cell.y == y) {
-                coveredCells.remove(cell);
-                if (cell.getHint() == 't' && (type.equals("P1") || type.equals("P5") || type.equals("P6") || type.equals("P7") || type.equals("P8"))) {
-                    isGameOver = true;
-                } else if (checkGameWon()) {
-                    if (type.equals("P1") || type.equals("P5") || type.equals("P6") || type.equals("P7") || type.equals("P8")) {
-                        isGameOver = true;
-                    }
-                    isGameWon = true;
-                }
-                return cell;
+        if (!isOnBoard(x, y)) {
+            return null;
+        }
+        int index = topology.index(x, y);
+        Cell cell = cells[index];
+        if (covered[index]) {
+            covered[index] = false;
+            if (cell.getHint() != 't') {
+                nCoveredSafe--;
+            }
+        }
+        flagged[index] = false;
+        if (cell.getHint() == 't' && (type.equals("P1") || type.equals("P5") || type.equals("P6") || type.equals("P7") || type.equals("P8") || type.equals("P9"))) {
+            isGameOver = true;
+        } else if (checkGameWon()) {
+            if (type.equals("P1") || type.equals("P5") || type.equals("P6") || type.equals("P7") || type.equals("P8") || type.equals("P9")) {
+                isGameOver = true;
             }
+            isGameWon = true;
         }
-        return null;
+        return cell;
+    }
+
+    /**
+     * Flag a covered cell as a tornado. Flagging does not end the game, even if the cell is safe.
+     *
+     * @param x
+     * @param y
+     * @return the flagged cell, or null if it is not on the board or has been uncovered
+     */
+    public Cell flagCell(int x, int y) {
+        if (!isOnBoard(x, y) || !covered[topology.index(x, y)]) {
+            return null;
+        }
+        flagged[topology.index(x, y)] = true;
+        return cells[topology.index(x, y)];
     }
 
     /**
      * Check the tornadoes in the remaining cells
      *
-     * @return true
+     * @return true if every covered cell is a tornado
      */
     public boolean checkGameWon() {
-        if (coveredCells.size() == 0) {
-            return true;
-        } else {
-            for (Cell cell: coveredCells) {
-                if (board[cell.y][cell.x] != 't') {
-                    return false;
-                }
+        return nCoveredSafe == 0;
+    }
+
+    /**
+     * Getter
+     *
+     * @return board, copied from the view unless it is already a char array
+     */
+    public char[][] getBoard() {
+        return board.toArray();
+    }
+
+    /**
+     * Getter
+     *
+     * @return the width of the board
+     */
+    public int getWidth() {
+        return board.getWidth();
+    }
+
+    /**
+     * Getter
+     *
+     * @return the height of the board
+     */
+    public int getHeight() {
+        return board.getHeight();
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of tornadoes on the board
+     */
+    public int getNumberOfTornadoes() {
+        return nTornadoes;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the flagged cells, in board order
+     */
+    public ArrayList<Cell> getFlaggedCells() {
+        return getCells(flagged);
+    }
+
+    /**
+     * Getter
+     *
+     * @return the covered cells, in board order
+     */
+    public ArrayList<Cell> getCoveredCells() {
+        return getCells(covered);
+    }
+
+    /**
+     * Return the cells whose index is marked
+     *
+     * @param marked by index
+     * @return the cells, in board order
+     */
+    private ArrayList<Cell> getCells(boolean[] marked) {
+        ArrayList<Cell> list = new ArrayList<>();
+        for (int i = 0; i < cells.length; i++) {
+            if (marked[i]) {
+                list.add(cells[i]);
             }
-            return true;
         }
+        return list;
     }
 
     /**
      * Getter
      *
-     * @return board
+     * @return topology
      */
-    public char[][] getBoard() {
-        return board;
+    public Topology getTopology() {
+        return topology;
     }
 
     /**
@@ -0,0 +1,156 @@
+/**
+ * Something which happened in a game, as seen by the listeners of an EventStream.
+ *
+ * Events are immutable, so one instance can be handed to every listener.
+ */
+public class GameEvent {
+
+    public enum Kind {
+        CELL_UNCOVERED, CELL_FLAGGED, DEDUCTION_MADE, GAME_ENDED
+    }
+
+    private Kind kind;
+    // System.nanoTime() when the event happened
+    private long nanos;
+    private int x;
+    private int y;
+    // The strategy which deduced the move, or made the deduction
+    private String strategy;
+    // Solver time spent on the move
+    private long solverNanos;
+    // The outcome of an ended game
+    private GameResult.Outcome outcome;
+
+    /**
+     * Constructor
+     *
+     * @param kind
+     * @param x of the cell, or -1
+     * @param y of the cell, or -1
+     * @param strategy
+     * @param solverNanos
+     * @param outcome
+     */
+    private GameEvent(Kind kind, int x, int y, String strategy, long solverNanos, GameResult.Outcome outcome) {
+        this.kind = kind;
+        this.nanos = System.nanoTime();
+        this.x = x;
+        this.y = y;
+        this.strategy = strategy;
+        this.solverNanos = solverNanos;
+        this.outcome = outcome;
+    }
+
+    /**
+     * Create the event of an uncovered or flagged cell
+     *
+     * @param cell
+     * @param flag true if the cell was flagged
+     * @param strategy which deduced the move
+     * @param solverNanos spent on the move
+     * @return the event
+     */
+    public static GameEvent move(Cell cell, boolean flag, String strategy, long solverNanos) {
+        return new GameEvent(flag ? Kind.CELL_FLAGGED : Kind.CELL_UNCOVERED, cell.x, cell.y, strategy, solverNanos, null);
+    }
+
+    /**
+     * Create the event of a deduction
+     *
+     * @param strategy which made the deduction
+     * @return the event
+     */
+    public static GameEvent deduction(String strategy) {
+        return new GameEvent(Kind.DEDUCTION_MADE, -1, -1, strategy, 0, null);
+    }
+
+    /**
+     * Create the event of the end of a game
+     *
+     * @param outcome of the game
+     * @return the event
+     */
+    public static GameEvent end(GameResult.Outcome outcome) {
+        return new GameEvent(Kind.GAME_ENDED, -1, -1, null, 0, outcome);
+    }
+
+    /**
+     * Getter
+     *
+     * @return kind
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Getter
+     *
+     * @return nanos
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Getter
+     *
+     * @return x
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Getter
+     *
+     * @return y
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Getter
+     *
+     * @return strategy
+     */
+    public String getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Getter
+     *
+     * @return solverNanos
+     */
+    public long getSolverNanos() {
+        return solverNanos;
+    }
+
+    /**
+     * Getter
+     *
+     * @return outcome
+     */
+    public GameResult.Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Override toString
+     *
+     * @return the event on one line
+     */
+    @Override
+    public String toString() {
+        switch (kind) {
+            case DEDUCTION_MADE:
+                return nanos + " " + kind + " " + strategy;
+            case GAME_ENDED:
+                return nanos + " " + kind + " " + outcome;
+            default:
+                return nanos + " " + kind + " " + x + "," + y + " " + strategy + " solverNs=" + solverNanos;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * Receives the events of a game from an EventStream, on the listener's own thread.
+ */
+public interface GameListener {
+
+    /**
+     * Handle an event
+     *
+     * @param event
+     */
+    void onEvent(GameEvent event);
+
+    /**
+     * Called once after the last event, when the stream is closed
+     */
+    default void onClose() {
+    }
+}
@@ -0,0 +1,165 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class GameResult {
+
+    public enum Outcome {
+        ALIVE, DEAD, NOT_TERMINATED
+    }
+
+    private String type;
+    private Outcome outcome;
+    private int moves;
+    // The number of deductions made by each strategy
+    private HashMap<String, Integer> deductions;
+    // The number of moves whose solver budget ran out
+    private int budgetHits;
+    private long solverNanos;
+    private long totalNanos;
+    // Heap in use when the game ended
+    private long heapBytes;
+    // The number of times the agent's FormulaFactory was cleared
+    private int factoryClears;
+    // The number of times a solver was asked for a safe cell
+    private int solverCalls;
+
+    /**
+     * Constructor
+     *
+     * @param type (agent)
+     * @param outcome
+     * @param moves
+     * @param deductions
+     * @param budgetHits
+     * @param solverNanos
+     * @param totalNanos
+     * @param heapBytes
+     * @param factoryClears
+     * @param solverCalls
+     */
+    public GameResult(String type, Outcome outcome, int moves, HashMap<String, Integer> deductions, int budgetHits, long solverNanos, long totalNanos,
+                      long heapBytes, int factoryClears, int solverCalls) {
+        this.type = type;
+        this.outcome = outcome;
+        this.moves = moves;
+        this.deductions = new HashMap<>(deductions);
+        this.budgetHits = budgetHits;
+        this.solverNanos = solverNanos;
+        this.totalNanos = totalNanos;
+        this.heapBytes = heapBytes;
+        this.factoryClears = factoryClears;
+        this.solverCalls = solverCalls;
+    }
+
+    /**
+     * Override toString
+     *
+     * @return a single summary line for batch output
+     */
+    @Override
+    public String toString() {
+        return type + " " + outcome + " moves=" + moves + " deductions=" + new TreeMap<>(deductions)
+                + " budgetHits=" + budgetHits + " solverMs=" + (solverNanos / 1000000.0) + " totalMs=" + (totalNanos / 1000000.0)
+                + " heapMB=" + (heapBytes >> 20) + " factoryClears=" + factoryClears + " solverCalls=" + solverCalls;
+    }
+
+    /**
+     * Getter
+     *
+     * @return type
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Getter
+     *
+     * @return outcome
+     */
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Getter
+     *
+     * @return true if the agent solved the board
+     */
+    public boolean isWon() {
+        return outcome == Outcome.ALIVE;
+    }
+
+    /**
+     * Getter
+     *
+     * @return moves
+     */
+    public int getMoves() {
+        return moves;
+    }
+
+    /**
+     * Getter
+     *
+     * @return deductions
+     */
+    public Map<String, Integer> getDeductions() {
+        return deductions;
+    }
+
+    /**
+     * Getter
+     *
+     * @return budgetHits
+     */
+    public int getBudgetHits() {
+        return budgetHits;
+    }
+
+    /**
+     * Getter
+     *
+     * @return solverNanos
+     */
+    public long getSolverNanos() {
+        return solverNanos;
+    }
+
+    /**
+     * Getter
+     *
+     * @return totalNanos
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Getter
+     *
+     * @return heapBytes
+     */
+    public long getHeapBytes() {
+        return heapBytes;
+    }
+
+    /**
+     * Getter
+     *
+     * @return factoryClears
+     */
+    public int getFactoryClears() {
+        return factoryClears;
+    }
+
+    /**
+     * Getter
+     *
+     * @return solverCalls
+     */
+    public int getSolverCalls() {
+        return solverCalls;
+    }
+}
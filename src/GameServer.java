@@ -0,0 +1,438 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Localhost server which hosts many games at once.
+ *
+ * Clients create a game on a board, then uncover and flag its cells one request
+ * at a time, or ask the server to play a whole game with one of the agents.
+ * Requests run on a fixed thread pool and every game is locked on its own, so
+ * sessions never wait for each other. Responses are plain "key=value" text.
+ *
+ * POST   /games?board=ID[&topology=name][&type=Pn]  create a game
+ * GET    /games/{id}                                 the board as the player sees it
+ * POST   /games/{id}/uncover?x=X&y=Y                 uncover a cell
+ * POST   /games/{id}/flag?x=X&y=Y                    flag a cell
+ * DELETE /games/{id}                                 end a game
+ * POST   /play?type=Pn&board=ID[&options]           let an agent play a whole game
+ * GET    /stats                                      latency histogram of every route
+ */
+public class GameServer {
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private ConcurrentHashMap<Integer, Session> sessions;
+    private AtomicInteger nextId;
+    // Route -> latencies
+    private ConcurrentHashMap<String, LatencyHistogram> latencies;
+
+    /**
+     * A game and the board as the player sees it
+     */
+    private static class Session {
+
+        private Game game;
+        // Decides whether uncovering a tornado ends the game, as for the agents
+        private String type;
+        private char[][] view;
+
+        private Session(Game game, String type) {
+            this.game = game;
+            this.type = type;
+            this.view = new char[game.getHeight()][game.getWidth()];
+            for (char[] row : view) {
+                Arrays.fill(row, '?');
+            }
+        }
+    }
+
+    /**
+     * A request which cannot be served, with its HTTP status
+     */
+    private static class HttpError extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private int status;
+
+        private HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param port to listen on, on localhost
+     * @param nThreads the number of request threads
+     * @throws IOException
+     */
+    public GameServer(int port, int nThreads) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        this.executor = Executors.newFixedThreadPool(nThreads);
+        this.sessions = new ConcurrentHashMap<>();
+        this.nextId = new AtomicInteger();
+        this.latencies = new ConcurrentHashMap<>();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Start serving
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stop serving and release the threads
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Getter
+     *
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Serve one request and record its latency under its route
+     *
+     * @param exchange
+     * @throws IOException
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().split("/");
+        HashMap<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        int status = 200;
+        String body;
+        String route = getRoute(method, path);
+        try {
+            try {
+                body = dispatch(method, path, query);
+            } catch (HttpError e) {
+                status = e.status;
+                body = "error=" + e.getMessage();
+            } catch (IllegalArgumentException e) {
+                status = 400;
+                body = "error=IllegalArgumentException: " + e.getMessage();
+            } catch (RuntimeException e) {
+                status = 500;
+                body = "error=" + e.getClass().getSimpleName() + ": " + e.getMessage();
+            }
+            byte[] bytes = (body + "\n").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        } finally {
+            latencies.computeIfAbsent(route, k -> new LatencyHistogram()).record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Name the route of a request, with the game id replaced so that all games share a histogram.
+     * Any request which is not one of the routes is named "other", so that clients cannot add histograms.
+     *
+     * @param method of the request
+     * @param path split on '/'
+     * @return the route
+     */
+    private static String getRoute(String method, String[] path) {
+        String route = "other";
+        if (path.length == 2 && path[1].equals("games")) {
+            route = "POST /games";
+        } else if (path.length == 3 && path[1].equals("games")) {
+            route = method.equals("DELETE") ? "DELETE /games/{id}" : "GET /games/{id}";
+        } else if (path.length == 4 && path[1].equals("games") && (path[3].equals("uncover") || path[3].equals("flag"))) {
+            route = "POST /games/{id}/" + path[3];
+        } else if (path.length == 2 && path[1].equals("play")) {
+            route = "POST /play";
+        } else if (path.length == 2 && path[1].equals("stats")) {
+            route = "GET /stats";
+        }
+        return route.startsWith(method + " ") ? route : "other";
+    }
+
+    /**
+     * Serve a request
+     *
+     * @param method of the request
+     * @param path split on '/'
+     * @param query parameters
+     * @return the response body
+     * @throws HttpError
+     */
+    private String dispatch(String method, String[] path, HashMap<String, String> query) throws HttpError {
+        if (path.length < 2) {
+            throw new HttpError(404, "not found");
+        }
+        switch (path[1]) {
+            case "games":
+                if (path.length == 2) {
+                    requireMethod(method, "POST");
+                    return createGame(query);
+                }
+                Session session = sessions.get(parseInt(path[2]));
+                if (session == null) {
+                    throw new HttpError(404, "no game " + path[2]);
+                }
+                if (path.length == 3) {
+                    if (method.equals("DELETE")) {
+                        sessions.remove(parseInt(path[2]));
+                        return "deleted=true";
+                    }
+                    requireMethod(method, "GET");
+                    return render(session);
+                }
+                requireMethod(method, "POST");
+                int x = parseInt(require(query, "x"));
+                int y = parseInt(require(query, "y"));
+                if (path[3].equals("uncover")) {
+                    return uncover(session, x, y);
+                } else if (path[3].equals("flag")) {
+                    return flag(session, x, y);
+                }
+                throw new HttpError(404, "not found");
+            case "play":
+                requireMethod(method, "POST");
+                return play(query);
+            case "stats":
+                requireMethod(method, "GET");
+                StringBuilder sb = new StringBuilder("games=" + sessions.size());
+                for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(latencies).entrySet()) {
+                    sb.append("\n").append(entry.getKey()).append(" ").append(entry.getValue());
+                }
+                return sb.toString();
+            default:
+                throw new HttpError(404, "not found");
+        }
+    }
+
+    /**
+     * Create a game
+     *
+     * @param query with the board, and optionally the topology and the agent type
+     * @return the id and size of the game
+     * @throws HttpError
+     */
+    private String createGame(HashMap<String, String> query) throws HttpError {
+        String boardId = require(query, "board");
+        String topologyName = query.getOrDefault("topology", "hex");
+        Game game = loadGame(boardId, topologyName);
+        int id = nextId.incrementAndGet();
+        sessions.put(id, new Session(game, query.getOrDefault("type", "P1")));
+        return "game=" + id + " width=" + game.getWidth() + " height=" + game.getHeight() + " tornadoes=" + game.getNumberOfTornadoes();
+    }
+
+    /**
+     * Build a game from a board id
+     *
+     * @param boardId of the board
+     * @param topologyName of the board
+     * @return the game
+     * @throws HttpError 400 if the board id names no board
+     */
+    private static Game loadGame(String boardId, String topologyName) throws HttpError {
+        try {
+            int[] size = BoardGenerator.getSize(boardId);
+            Topology topology = Topology.create(topologyName, size[0], size[1]);
+            return new Game(BoardGenerator.loadView(boardId, topology), topology);
+        } catch (RuntimeException e) {
+            throw new HttpError(400, "bad board " + boardId + ": " + e);
+        }
+    }
+
+    /**
+     * Uncover a cell of a game
+     *
+     * @param session
+     * @param x
+     * @param y
+     * @return the hint of the cell and the state of the game
+     * @throws HttpError
+     */
+    private static String uncover(Session session, int x, int y) throws HttpError {
+        synchronized (session) {
+            if (session.game.isGameOver()) {
+                throw new HttpError(409, "game over");
+            }
+            Cell cell = session.game.uncoverCell(x, y, session.type);
+            if (cell == null) {
+                throw new HttpError(400, "no cell " + x + "," + y);
+            }
+            session.view[y][x] = cell.getHint();
+            return "hint=" + cell.getHint() + " over=" + session.game.isGameOver() + " won=" + session.game.isGameWon();
+        }
+    }
+
+    /**
+     * Flag a cell of a game
+     *
+     * @param session
+     * @param x
+     * @param y
+     * @return whether the cell was flagged
+     * @throws HttpError
+     */
+    private static String flag(Session session, int x, int y) throws HttpError {
+        synchronized (session) {
+            if (session.game.isGameOver()) {
+                throw new HttpError(409, "game over");
+            }
+            Cell cell = session.game.flagCell(x, y);
+            if (cell != null) {
+                session.view[y][x] = '*';
+            }
+            return "flagged=" + (cell != null);
+        }
+    }
+
+    /**
+     * Render the board of a game as the player sees it, one row per line
+     *
+     * @param session
+     * @return the state of the game and the board
+     */
+    private static String render(Session session) {
+        synchronized (session) {
+            StringBuilder sb = new StringBuilder("over=" + session.game.isGameOver() + " won=" + session.game.isGameWon());
+            for (char[] row : session.view) {
+                sb.append("\n").append(row);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Let an agent play a whole game on the request thread
+     *
+     * @param query with the agent type and the board, and optionally the topology, sat4j,
+     *              budget, conflicts, count and compile options of A3main
+     * @return the result line of the game
+     * @throws HttpError
+     */
+    private static String play(HashMap<String, String> query) throws HttpError {
+        String type = require(query, "type");
+        String boardId = require(query, "board");
+        Agent agent = new Agent(type, false, loadGame(boardId, query.getOrDefault("topology", "hex")));
+        agent.setHeadless(true);
+        agent.setSatConfig(query.getOrDefault("sat4j", "default"));
+        agent.setUseTornadoCount(query.containsKey("count"));
+        if (query.containsKey("compile")) {
+            agent.setCompiler(new FrontierCompiler());
+        }
+        long budgetMs = Long.parseLong(query.getOrDefault("budget", "0"));
+        int budgetConflicts = Integer.parseInt(query.getOrDefault("conflicts", "0"));
+        if (budgetMs > 0 || budgetConflicts > 0) {
+            agent.setBudget(new MoveBudget(budgetMs, budgetConflicts));
+        }
+        return boardId + " " + agent.playGame();
+    }
+
+    /**
+     * Check the method of a request
+     *
+     * @param method of the request
+     * @param expected method
+     * @throws HttpError
+     */
+    private static void requireMethod(String method, String expected) throws HttpError {
+        if (!method.equals(expected)) {
+            throw new HttpError(405, "use " + expected);
+        }
+    }
+
+    /**
+     * Return a query parameter which must be present
+     *
+     * @param query
+     * @param name of the parameter
+     * @return the value
+     * @throws HttpError
+     */
+    private static String require(HashMap<String, String> query, String name) throws HttpError {
+        String value = query.get(name);
+        if (value == null) {
+            throw new HttpError(400, "missing " + name);
+        }
+        return value;
+    }
+
+    /**
+     * Parse a number of a request
+     *
+     * @param s
+     * @return the number
+     * @throws HttpError
+     */
+    private static int parseInt(String s) throws HttpError {
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "not a number: " + s);
+        }
+    }
+
+    /**
+     * Split a raw query string into its parameters. A parameter without a value maps to "".
+     *
+     * @param rawQuery
+     * @return the parameters
+     */
+    private static HashMap<String, String> parseQuery(String rawQuery) {
+        HashMap<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            query.put(name, value);
+        }
+        return query;
+    }
+
+    /**
+     * Run the server until the process is stopped
+     *
+     * @param args [port] [threads]
+     */
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int nThreads = args.length > 1 ? Integer.parseInt(args[1]) : 2 * Runtime.getRuntime().availableProcessors();
+        try {
+            GameServer server = new GameServer(port, nThreads);
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            server.start();
+            System.out.println("GameServer listening on localhost:" + server.getPort() + " with " + nThreads + " threads");
+        } catch (IOException e) {
+            System.out.println("IOException: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+import java.util.ArrayList;
+
+/**
+ * The hexagonal board of Tornado Sweeper, drawn as a sheared grid.
+ * A cell touches the cells to its left and right, above and below, and the
+ * two diagonal cells up-left and down-right.
+ */
+public class HexTopology extends Topology {
+
+    /**
+     * Constructor
+     *
+     * @param width
+     * @param height
+     */
+    public HexTopology(int width, int height) {
+        super(width, height);
+        build();
+    }
+
+    /**
+     * Getter
+     *
+     * @return "hex"
+     */
+    @Override
+    public String getName() {
+        return "hex";
+    }
+
+    /**
+     * Add the six hexagonal neighbours
+     *
+     * @param x
+     * @param y
+     * @param neighbours indexes of the neighbouring cells
+     */
+    @Override
+    protected void addNeighbours(int x, int y, ArrayList<Integer> neighbours) {
+        if (x > 0 && y > 0) {
+            neighbours.add(index(x - 1, y - 1));
+        }
+        if (x > 0) {
+            neighbours.add(index(x - 1, y));
+        }
+        if (y > 0) {
+            neighbours.add(index(x, y - 1));
+        }
+        if (x < width - 1 && y < height - 1) {
+            neighbours.add(index(x + 1, y + 1));
+        }
+        if (x < width - 1) {
+            neighbours.add(index(x + 1, y));
+        }
+        if (y < height - 1) {
+            neighbours.add(index(x, y + 1));
+        }
+    }
+
+    /**
+     * Return the offsets of the six hexagonal neighbours
+     *
+     * @return dx, dy of every neighbour
+     */
+    @Override
+    public int[] getStencil() {
+        return new int[]{-1, -1, -1, 0, 0, -1, 1, 1, 1, 0, 0, 1};
+    }
+
+    /**
+     * Return the number of symmetries of the hexagon: six rotations, each with or without a reflection
+     *
+     * @return 12
+     */
+    @Override
+    public int getSymmetries() {
+        return 12;
+    }
+
+    /**
+     * Map a position by a symmetry of the hexagon. On the sheared grid a sixth of a turn
+     * is (x, y) -> (x - y, x), and swapping x and y is a reflection.
+     *
+     * @param symmetry the reflection in the lowest bit, the number of rotations above it
+     * @param x
+     * @param y
+     * @return {x, y} of the image
+     */
+    @Override
+    public int[] transform(int symmetry, int x, int y) {
+        if ((symmetry & 1) == 1) {
+            int swap = x;
+            x = y;
+            y = swap;
+        }
+        for (int r = 0; r < symmetry >> 1; r++) {
+            int rotated = x - y;
+            y = x;
+            x = rotated;
+        }
+        return new int[]{x, y};
+    }
+}
@@ -0,0 +1,78 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with one bucket per power of two microseconds.
+ *
+ * Bucket i counts the requests which took [2^(i-1), 2^i) microseconds, so 40
+ * buckets cover everything up to about twelve days with at most a factor of two
+ * of error, which is plenty for spotting tail latencies in a load test.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+
+    private AtomicLongArray counts;
+    private AtomicLongArray totals;
+
+    /**
+     * Constructor
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.totals = new AtomicLongArray(2);
+    }
+
+    /**
+     * Record the latency of one request
+     *
+     * @param nanos
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        counts.incrementAndGet(bucket);
+        totals.incrementAndGet(0);
+        totals.addAndGet(1, nanos);
+    }
+
+    /**
+     * Return the upper bound of the bucket which holds a percentile
+     *
+     * @param percentile between 0 and 100
+     * @return the latency in microseconds
+     */
+    public long getPercentile(double percentile) {
+        long n = totals.get(0);
+        long rank = (long) Math.ceil(n * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank && seen > 0) {
+                return 1L << i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of requests recorded
+     */
+    public long getCount() {
+        return totals.get(0);
+    }
+
+    /**
+     * Override toString
+     *
+     * @return the count, the mean and the main percentiles
+     */
+    @Override
+    public String toString() {
+        long n = totals.get(0);
+        double meanUs = n == 0 ? 0 : totals.get(1) / 1000.0 / n;
+        return "count=" + n + " meanUs=" + Math.round(meanUs) + " p50Us<=" + getPercentile(50)
+                + " p90Us<=" + getPercentile(90) + " p99Us<=" + getPercentile(99) + " maxUs<=" + getPercentile(100);
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Enumerates the models of a set of cells under the counting constraints around them.
+ *
+ * Every cell is assigned safe, then tornado, in order, and a constraint prunes
+ * the search as soon as it has more tornadoes than it needs, or fewer cells left
+ * than tornadoes to place. A model is a bit mask over the cells, bit u set if
+ * cell u is a tornado, so at most 64 cells can be enumerated. Every model is
+ * handed to a visitor, which may stop the search. The search can also be given
+ * up after a number of nodes or at a deadline. It is shared by the pattern store
+ * of the agent, the guesses of GainPolicy and the windows of CompactAgent.
+ */
+public class ModelEnumerator {
+
+    /**
+     * Receives the models of an enumeration
+     */
+    public interface Visitor {
+
+        /**
+         * Receive a model
+         *
+         * @param model bit u set if cell u is a tornado
+         * @return false to stop the search
+         */
+        boolean visit(long model);
+    }
+
+    // Cell -> the constraints around it
+    private int[][] constraints;
+    // Constraint -> tornadoes still to place around it
+    private int[] remaining;
+    // Constraint -> cells around it not assigned yet
+    private int[] open;
+    private Visitor visitor;
+    private long maxNodes;
+    // System.nanoTime after which the search is given up
+    private long deadline;
+    private long nodes;
+
+    /**
+     * Constructor. The arrays are changed during a search and restored when it returns.
+     *
+     * @param constraints cell -> the constraints around it
+     * @param remaining constraint -> tornadoes still to place around it
+     * @param open constraint -> cells around it not assigned yet
+     */
+    public ModelEnumerator(int[][] constraints, int[] remaining, int[] open) {
+        this.constraints = constraints;
+        this.remaining = remaining;
+        this.open = open;
+        this.maxNodes = Long.MAX_VALUE;
+        this.deadline = Long.MAX_VALUE;
+    }
+
+    /**
+     * Setter
+     *
+     * @param maxNodes after which the search is given up
+     */
+    public void setMaxNodes(long maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Setter
+     *
+     * @param deadline System.nanoTime after which the search is given up
+     */
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Enumerate every model
+     *
+     * @param visitor which receives the models
+     * @return false if the search was stopped by the visitor or given up
+     */
+    public boolean enumerate(Visitor visitor) {
+        this.visitor = visitor;
+        this.nodes = 0;
+        return enumerate(0, 0L);
+    }
+
+    /**
+     * Getter
+     *
+     * @return the nodes of the last search
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Assign the cells from a position on
+     *
+     * @param u the next cell to assign
+     * @param model the tornadoes assigned so far
+     * @return false if the search was stopped
+     */
+    private boolean enumerate(int u, long model) {
+        // The clock is only read every 1024 nodes
+        if (++nodes > maxNodes || (nodes & 1023) == 0 && deadline != Long.MAX_VALUE && System.nanoTime() > deadline) {
+            return false;
+        }
+        if (u == constraints.length) {
+            return visitor.visit(model);
+        }
+        for (int value = 0; value <= 1; value++) {
+            boolean fits = true;
+            for (int c : constraints[u]) {
+                open[c]--;
+                remaining[c] -= value;
+                if (remaining[c] < 0 || remaining[c] > open[c]) {
+                    fits = false;
+                }
+            }
+            boolean more = !fits || enumerate(u + 1, value == 1 ? model | 1L << u : model);
+            for (int c : constraints[u]) {
+                open[c]++;
+                remaining[c] += value;
+            }
+            if (!more) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
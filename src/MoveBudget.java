@@ -0,0 +1,162 @@
+import org.logicng.handlers.ComputationHandler;
+import org.logicng.handlers.SATHandler;
+import org.sat4j.specs.IConstr;
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.ISolverService;
+import org.sat4j.specs.SearchListenerAdapter;
+
+/**
+ * Time and conflict budget for the solver calls of a single move.
+ *
+ * The budget is handed to LogicNG as a SATHandler, and is turned into a
+ * timeout of the SAT4J solver before every probe. A budget of 0 is unlimited.
+ */
+public class MoveBudget extends ComputationHandler implements SATHandler {
+
+    private long timeMs;
+    private int conflicts;
+    private long deadline;
+    private int conflictsUsed;
+
+    /**
+     * Constructor
+     *
+     * @param timeMs the time budget of a move in milliseconds
+     * @param conflicts the conflict budget of a move
+     */
+    public MoveBudget(long timeMs, int conflicts) {
+        this.timeMs = timeMs;
+        this.conflicts = conflicts;
+    }
+
+    /**
+     * Start the budget of a new move
+     */
+    public void startMove() {
+        deadline = timeMs > 0 ? System.nanoTime() + timeMs * 1000000 : Long.MAX_VALUE;
+        conflictsUsed = 0;
+        aborted = false;
+    }
+
+    /**
+     * Check whether the budget of the current move has run out
+     *
+     * @return true if the budget has run out
+     */
+    public boolean isExhausted() {
+        if (System.nanoTime() > deadline || (conflicts > 0 && conflictsUsed >= conflicts)) {
+            aborted = true;
+        }
+        return aborted;
+    }
+
+    /**
+     * Mark the budget of the current move as spent
+     */
+    public void abort() {
+        aborted = true;
+    }
+
+    /**
+     * Keeps the aborted state over the several solver calls of a move
+     */
+    @Override
+    public void started() {
+    }
+
+    /**
+     * Getter
+     *
+     * @return the time budget of a move in milliseconds, 0 for no limit
+     */
+    public long getTimeMs() {
+        return timeMs;
+    }
+
+    /**
+     * Count a conflict of LogicNG
+     *
+     * @return false to stop the solver
+     */
+    @Override
+    public boolean detectedConflict() {
+        conflictsUsed++;
+        return !isExhausted();
+    }
+
+    /**
+     * Set the timeout of a SAT4J solver to what is left of the budget.
+     * SAT4J keeps a single timeout, on time or on conflicts. With both budgets the
+     * timeout is on time, so that a probe never runs past the deadline, and the
+     * conflicts are counted by a listener which expires the timeout when they run out.
+     *
+     * @param solver
+     */
+    public void configure(ISolver solver) {
+        if (timeMs > 0) {
+            solver.setTimeoutMs(Math.max(1, (deadline - System.nanoTime()) / 1000000));
+            if (conflicts > 0) {
+                solver.setSearchListener(new ConflictLimit(solver, conflicts - conflictsUsed));
+            }
+        } else if (conflicts > 0) {
+            solver.setTimeoutOnConflicts(conflicts - conflictsUsed);
+        }
+    }
+
+    /**
+     * Count the conflicts of a SAT4J probe
+     *
+     * @param before the conflicts of the solver before the probe
+     * @param after the conflicts of the solver after the probe
+     */
+    public void account(long before, long after) {
+        conflictsUsed += (int) (after - before);
+    }
+
+    /**
+     * Read the conflict counter of a SAT4J solver
+     *
+     * @param solver
+     * @return the number of conflicts so far
+     */
+    public static long conflictsOf(ISolver solver) {
+        Number n = solver.getStat().get("conflicts");
+        return n == null ? 0 : n.longValue();
+    }
+
+    /**
+     * Expires the timeout of a SAT4J solver once a probe has used its conflicts
+     */
+    private static class ConflictLimit extends SearchListenerAdapter<ISolverService> {
+
+        private static final long serialVersionUID = 1L;
+
+        private transient ISolver solver;
+        private int left;
+
+        /**
+         * Constructor
+         *
+         * @param solver whose timeout is expired
+         * @param left the conflicts the probe may use
+         */
+        ConflictLimit(ISolver solver, int left) {
+            this.solver = solver;
+            this.left = left;
+        }
+
+        /**
+         * Count a conflict
+         *
+         * @param confl
+         * @param dlevel
+         * @param trailLevel
+         */
+        @Override
+        public void conflictFound(IConstr confl, int dlevel, int trailLevel) {
+            if (--left <= 0) {
+                solver.expireTimeout();
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Append-only binary log of the moves made in one or more games.
+ *
+ * Every record starts with a tag byte. Cell indexes, lengths and solver times
+ * are written as unsigned varints, and strategy names are written once and then
+ * referred to by a small id, so a typical move costs three to five bytes.
+ */
+public class MoveLog {
+
+    public static final byte TAG_GAME = 0;
+    public static final byte TAG_STRATEGY = 1;
+    public static final byte TAG_UNCOVER = 2;
+    public static final byte TAG_FLAG = 3;
+    public static final byte TAG_END = 4;
+    // Follows TAG_GAME unless the board is hex, so that older logs still read as hex games
+    public static final byte TAG_TOPOLOGY = 5;
+    // Follows TAG_GAME: the seed of the agent and the options the game was played with
+    public static final byte TAG_OPTIONS = 6;
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    // Strategy ids of the current file
+    private HashMap<String, Integer> strategies;
+    private int width;
+
+    /**
+     * Constructor, opens the log for appending
+     *
+     * @param path of the log file
+     * @throws IOException
+     */
+    public MoveLog(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.buffer = ByteBuffer.allocateDirect(1 << 16);
+        this.strategies = new HashMap<>();
+    }
+
+    /**
+     * Start a new game in the log
+     *
+     * @param type (agent)
+     * @param boardId the name of the board
+     * @param topology the name of the topology of the board
+     * @param width
+     * @param height
+     * @param seed of the random probing of the agent
+     * @param options of A3main which change the game, e.g. "count" or "budget=50"
+     * @throws IOException
+     */
+    public void startGame(String type, String boardId, String topology, int width, int height, long seed,
+                          ArrayList<String> options) throws IOException {
+        this.width = width;
+        // Strategy ids are scoped to a game so that every game can be read on its own
+        strategies.clear();
+        ensure(1);
+        buffer.put(TAG_GAME);
+        putString(type);
+        putString(boardId);
+        putVarint(width);
+        putVarint(height);
+        if (!topology.equals("hex")) {
+            ensure(1);
+            buffer.put(TAG_TOPOLOGY);
+            putString(topology);
+        }
+        ensure(1);
+        buffer.put(TAG_OPTIONS);
+        putVarint(seed);
+        putVarint(options.size());
+        for (String option : options) {
+            putString(option);
+        }
+    }
+
+    /**
+     * Record a move
+     *
+     * @param x
+     * @param y
+     * @param flag true if the cell was flagged, false if it was uncovered
+     * @param strategy which deduced the move
+     * @param solverNanos time spent in the solver for this move
+     * @throws IOException
+     */
+    public void record(int x, int y, boolean flag, String strategy, long solverNanos) throws IOException {
+        Integer id = strategies.get(strategy);
+        if (id == null) {
+            id = strategies.size();
+            strategies.put(strategy, id);
+            ensure(1);
+            buffer.put(TAG_STRATEGY);
+            putVarint(id);
+            putString(strategy);
+        }
+        ensure(1);
+        buffer.put(flag ? TAG_FLAG : TAG_UNCOVER);
+        putVarint(y * width + x);
+        putVarint(id);
+        putVarint(solverNanos);
+    }
+
+    /**
+     * Record the end of the current game
+     *
+     * @param outcome of the game
+     * @throws IOException
+     */
+    public void endGame(GameResult.Outcome outcome) throws IOException {
+        ensure(2);
+        buffer.put(TAG_END);
+        buffer.put((byte) outcome.ordinal());
+    }
+
+    /**
+     * Write the buffered records to the file
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Flush and close the log
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    /**
+     * Make room in the buffer
+     *
+     * @param bytes which are about to be written
+     * @throws IOException
+     */
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Write an unsigned varint, seven bits per byte
+     *
+     * @param value
+     * @throws IOException
+     */
+    private void putVarint(long value) throws IOException {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Write a length-prefixed UTF-8 string
+     *
+     * @param s
+     * @throws IOException
+     */
+    private void putString(String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        putVarint(bytes.length);
+        ensure(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Read an unsigned varint
+     *
+     * @param in
+     * @return the value
+     */
+    public static long getVarint(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Read a length-prefixed UTF-8 string
+     *
+     * @param in
+     * @return the string
+     */
+    public static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[(int) getVarint(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,199 @@
+import java.util.Arrays;
+
+/**
+ * Board-wide pass of the single point strategy over packed byte arrays.
+ *
+ * The state of the board is kept in two bytes per cell: whether it is unproved or
+ * flagged, packed in one, and the hint of an uncovered cell. A sweep recounts the
+ * unproved and flagged neighbours of every cell at once, both packed in one sum,
+ * marks the numbered cells
+ * whose tornadoes are all flagged (AFN) or whose unproved neighbours are all
+ * tornadoes (AMN), and collects every unproved cell next to one of them, in board
+ * order. The counting and spreading are done row by row, one neighbour offset at
+ * a time, so every inner loop is a plain array walk with a constant shift, the
+ * shape HotSpot's SuperWord pass can compile to SIMD instructions. When the JVM
+ * is started with the incubating Vector API module, the rows are done by
+ * ByteLanes with explicit byte vectors instead, which does not depend on the JIT
+ * recognising the loops. A topology without fixed offsets (the torus) falls back
+ * to walking the adjacency of each cell.
+ */
+public class NeighbourCountKernel {
+
+    // Hint of a cell which is not an uncovered number
+    private static final byte NONE = -1;
+    // State of an unproved and of a flagged cell. A cell has at most 8 neighbours,
+    // so the two counts of a sum of states stay apart in the low and high 4 bits.
+    private static final byte UNKNOWN = 1;
+    private static final byte FLAGGED = 16;
+    // Marks of a numbered cell whose other unproved neighbours are safe, or are tornadoes
+    private static final byte AFN = 1;
+    private static final byte AMN = 2;
+    // True if the Vector API module was resolved at startup, so that ByteLanes can be loaded
+    private static final boolean VECTORS = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private Topology topology;
+    private int width;
+    private int height;
+    // dx, dy of every neighbour, or null to walk the adjacency
+    private int[] stencil;
+    // Cell -> the number of an uncovered cell, NONE otherwise
+    private byte[] hints;
+    // Cell -> UNKNOWN, FLAGGED, or 0 once uncovered
+    private byte[] states;
+    // Cell -> the sum of the states of its neighbours, recounted by every sweep
+    private byte[] counts;
+    // Numbered cell -> AFN and AMN marks
+    private byte[] marks;
+    // Cell -> the marks of its neighbours
+    private byte[] near;
+    // Indexes of the cells found by the last sweep
+    private int[] found;
+
+    /**
+     * Constructor. Every cell starts unproved.
+     *
+     * @param topology of the board
+     */
+    public NeighbourCountKernel(Topology topology) {
+        this.topology = topology;
+        this.width = topology.getWidth();
+        this.height = topology.getHeight();
+        this.stencil = topology.getStencil();
+        int nCells = width * height;
+        this.hints = new byte[nCells];
+        this.states = new byte[nCells];
+        this.counts = new byte[nCells];
+        this.marks = new byte[nCells];
+        this.near = new byte[nCells];
+        this.found = new int[nCells];
+        Arrays.fill(hints, NONE);
+        Arrays.fill(states, UNKNOWN);
+    }
+
+    /**
+     * Describe how the rows are counted
+     *
+     * @return "vector" with the bytes of a vector if the Vector API is used, "scalar" otherwise
+     */
+    public static String getLoops() {
+        return VECTORS ? "vector" + ByteLanes.getLanes() : "scalar";
+    }
+
+    /**
+     * Record that a cell has been proved
+     *
+     * @param index of the cell
+     * @param hint its hint, or '*' if it was flagged
+     */
+    public void setHint(int index, char hint) {
+        if (hint == '*') {
+            states[index] = FLAGGED;
+        } else {
+            states[index] = 0;
+            hints[index] = (byte) Character.getNumericValue(hint);
+        }
+    }
+
+    /**
+     * Find every unproved cell next to an AFN or AMN cell
+     *
+     * @return the number of cells found, which getFound returns in board order
+     */
+    public int sweep() {
+        count();
+        mark();
+        spread();
+        int n = 0;
+        for (int i = 0; i < states.length; i++) {
+            if (states[i] == UNKNOWN && near[i] != 0) {
+                found[n++] = i;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Getter
+     *
+     * @param i position in the cells found by the last sweep
+     * @return the index of the cell
+     */
+    public int getFound(int i) {
+        return found[i];
+    }
+
+    /**
+     * Recount the unproved and flagged neighbours of every cell
+     */
+    public void count() {
+        Arrays.fill(counts, (byte) 0);
+        if (stencil == null) {
+            int[] adjacency = topology.getAdjacency();
+            for (int i = 0; i < counts.length; i++) {
+                for (int j = topology.getStart(i); j < topology.getEnd(i); j++) {
+                    counts[i] += states[adjacency[j]];
+                }
+            }
+            return;
+        }
+        for (int k = 0; k < stencil.length; k += 2) {
+            int dx = stencil[k];
+            int dy = stencil[k + 1];
+            int shift = dy * width + dx;
+            for (int y = Math.max(0, -dy); y < Math.min(height, height - dy); y++) {
+                int from = y * width + Math.max(0, -dx);
+                int to = y * width + Math.min(width, width - dx);
+                if (VECTORS) {
+                    ByteLanes.add(counts, states, shift, from, to);
+                    continue;
+                }
+                for (int i = from; i < to; i++) {
+                    counts[i] += states[i + shift];
+                }
+            }
+        }
+    }
+
+    /**
+     * Mark the numbered cells in an AFN or AMN situation.
+     * A cell which is not a number has hint NONE, so its remaining tornadoes are negative and match no count.
+     */
+    private void mark() {
+        for (int i = 0; i < marks.length; i++) {
+            int remaining = hints[i] - ((counts[i] & 0xff) >> 4);
+            marks[i] = (byte) ((remaining == 0 ? AFN : 0) | (remaining == (counts[i] & 15) ? AMN : 0));
+        }
+    }
+
+    /**
+     * Give every cell the marks of its neighbours
+     */
+    private void spread() {
+        Arrays.fill(near, (byte) 0);
+        if (stencil == null) {
+            int[] adjacency = topology.getAdjacency();
+            for (int i = 0; i < near.length; i++) {
+                for (int j = topology.getStart(i); j < topology.getEnd(i); j++) {
+                    near[i] |= marks[adjacency[j]];
+                }
+            }
+            return;
+        }
+        for (int k = 0; k < stencil.length; k += 2) {
+            int dx = stencil[k];
+            int dy = stencil[k + 1];
+            int shift = dy * width + dx;
+            for (int y = Math.max(0, -dy); y < Math.min(height, height - dy); y++) {
+                int from = y * width + Math.max(0, -dx);
+                int to = y * width + Math.min(width, width - dx);
+                if (VECTORS) {
+                    ByteLanes.or(near, marks, shift, from, to);
+                    continue;
+                }
+                for (int i = from; i < to; i++) {
+                    near[i] |= marks[i + shift];
+                }
+            }
+        }
+    }
+}
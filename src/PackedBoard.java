@@ -0,0 +1,141 @@
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Board whose tornadoes are kept off the heap, one bit per cell, for boards too large for a char array.
+ *
+ * The hints are not stored: a hint is counted from the tornado bits of the
+ * neighbours when it is read, using the neighbour offsets of the topology, so a
+ * board of n cells takes n / 8 bytes of direct memory and nothing on the heap. A
+ * generated board places its tornadoes with the same random draws as
+ * BoardGenerator, so a board id names the same board in both.
+ */
+public class PackedBoard implements BoardView {
+
+    private int width;
+    private int height;
+    // dx, dy of every neighbour
+    private int[] stencil;
+    // Bit y * width + x is set if the cell is a tornado
+    private ByteBuffer tornadoes;
+    private int nTornadoes;
+
+    /**
+     * Constructor. The board starts without tornadoes.
+     *
+     * @param width
+     * @param height
+     * @param stencil dx, dy of every neighbour
+     */
+    public PackedBoard(int width, int height, int[] stencil) {
+        this.width = width;
+        this.height = height;
+        this.stencil = stencil;
+        this.tornadoes = ByteBuffer.allocateDirect((int) (((long) width * height + 7) / 8));
+    }
+
+    /**
+     * Load a board by its id, as BoardGenerator.load does
+     *
+     * @param id of the board
+     * @param stencil dx, dy of every neighbour of the topology
+     * @return the board
+     */
+    public static PackedBoard load(String id, int[] stencil) {
+        int[] size = BoardGenerator.getSize(id);
+        int width = size[0];
+        int height = size[1];
+        PackedBoard board = new PackedBoard(width, height, stencil);
+        if (!id.startsWith("GEN")) {
+            BoardView view = id.contains("#") ? BoardCorpus.load(id) : BoardView.of(World.valueOf(id).map);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (view.get(x, y) == 't') {
+                        board.setTornado(y * width + x);
+                    }
+                }
+            }
+            return board;
+        }
+        String[] fields = id.substring("GEN".length()).split(":");
+        long nCells = (long) width * height;
+        long nTornadoes = fields.length > 1 && !fields[1].isEmpty() ? Long.parseLong(fields[1]) : nCells / 6;
+        long seed = fields.length > 2 ? Long.parseLong(fields[2]) : 0;
+        // The two hint cells, top-left and center, are never tornadoes
+        int center = height / 2 * width + width / 2;
+        Random random = new Random(seed);
+        while (board.nTornadoes < nTornadoes && board.nTornadoes < nCells - 2) {
+            int index = random.nextInt(width * height);
+            if (index != 0 && index != center && !board.isTornado(index)) {
+                board.setTornado(index);
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Place a tornado
+     *
+     * @param index y * width + x of the cell
+     */
+    public void setTornado(int index) {
+        if (!isTornado(index)) {
+            tornadoes.put(index >> 3, (byte) (tornadoes.get(index >> 3) | 1 << (index & 7)));
+            nTornadoes++;
+        }
+    }
+
+    /**
+     * Check whether a cell is a tornado
+     *
+     * @param index y * width + x of the cell
+     * @return true if it is
+     */
+    public boolean isTornado(int index) {
+        return (tornadoes.get(index >> 3) >> (index & 7) & 1) == 1;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public char get(int x, int y) {
+        if (isTornado(y * width + x)) {
+            return 't';
+        }
+        int hint = 0;
+        for (int k = 0; k < stencil.length; k += 2) {
+            int nx = x + stencil[k];
+            int ny = y + stencil[k + 1];
+            if (nx >= 0 && ny >= 0 && nx < width && ny < height && isTornado(ny * width + nx)) {
+                hint++;
+            }
+        }
+        return (char) ('0' + hint);
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of tornadoes
+     */
+    public int getNumberOfTornadoes() {
+        return nTornadoes;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the bytes of direct memory the board takes
+     */
+    public long getOffHeapBytes() {
+        return tornadoes.capacity();
+    }
+}
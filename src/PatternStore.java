@@ -0,0 +1,156 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded store of solved frontier patterns, kept across games.
+ *
+ * A pattern is a set of frontier cells with its coordinates moved to the corner
+ * of its bounding box: the position and remaining tornadoes of every frontier
+ * cell, and the positions of the unproved cells around them, turned by the
+ * rotation or reflection of the board which gives the smallest description, so
+ * that symmetric patterns share an entry. A cell which the constraints of a
+ * pattern prove safe is safe under any further constraints, so the same pattern
+ * on another board, or elsewhere on the same board, has the same safe cells. A pattern with no safe cells is stored too, so that a
+ * frontier made only of known patterns needs no SAT call either.
+ * The least recently used patterns are dropped once the store is full.
+ */
+public class PatternStore {
+
+    // Default number of patterns kept
+    public static final int CAPACITY = 100000;
+    // Larger patterns rarely repeat and take long to enumerate, so they are neither looked up nor stored
+    public static final int MAX_UNKNOWNS = 24;
+
+    // Pattern -> dx, dy of every safe cell known, empty if it has none
+    private LinkedHashMap<String, int[]> patterns;
+    private int hits;
+    private int misses;
+    private int learned;
+    // Moves answered from the store without the solver of the strategy
+    private int answered;
+
+    /**
+     * Constructor
+     *
+     * @param capacity the number of patterns kept
+     */
+    public PatternStore(int capacity) {
+        this.patterns = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Return the safe cells of a pattern
+     *
+     * @param key of the pattern
+     * @return dx, dy of every safe cell, empty if it has none, or null if the pattern is unknown
+     */
+    public synchronized int[] get(String key) {
+        int[] safeCells = patterns.get(key);
+        if (safeCells == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return safeCells;
+    }
+
+    /**
+     * Store the safe cells of a pattern
+     *
+     * @param key of the pattern
+     * @param safeCells dx, dy of every safe cell, empty if it has none
+     */
+    public synchronized void put(String key, int[] safeCells) {
+        if (patterns.put(key, safeCells) == null) {
+            learned++;
+        }
+    }
+
+    /**
+     * Count a move which the store answered without the solver of the strategy
+     */
+    public synchronized void addAnswer() {
+        answered++;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of patterns
+     */
+    public synchronized int size() {
+        return patterns.size();
+    }
+
+    /**
+     * Add the patterns saved in a file, one "pattern safe cells" line each,
+     * with the safe cells as "dx,dy;dx,dy" or "-" for none
+     *
+     * @param path of the file
+     * @throws IOException
+     */
+    public synchronized void load(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            String[] fields = line.split(" ");
+            if (fields.length != 2) {
+                continue;
+            }
+            String[] cells = fields[1].equals("-") ? new String[0] : fields[1].split(";");
+            int[] safeCells = new int[2 * cells.length];
+            for (int i = 0; i < cells.length; i++) {
+                String[] xy = cells[i].split(",");
+                safeCells[2 * i] = Integer.parseInt(xy[0]);
+                safeCells[2 * i + 1] = Integer.parseInt(xy[1]);
+            }
+            patterns.put(fields[0], safeCells);
+        }
+    }
+
+    /**
+     * Save the patterns to a file, least recently used first
+     *
+     * @param path of the file
+     * @throws IOException
+     */
+    public synchronized void save(Path path) throws IOException {
+        ArrayList<String> lines = new ArrayList<>();
+        for (Map.Entry<String, int[]> entry : patterns.entrySet()) {
+            StringBuilder line = new StringBuilder(entry.getKey()).append(' ');
+            int[] safeCells = entry.getValue();
+            if (safeCells.length == 0) {
+                line.append('-');
+            }
+            for (int i = 0; i < safeCells.length; i += 2) {
+                if (i > 0) {
+                    line.append(';');
+                }
+                line.append(safeCells[i]).append(',').append(safeCells[i + 1]);
+            }
+            lines.add(line.toString());
+        }
+        Files.write(path, lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Override toString
+     *
+     * @return the size of the store, its hits and misses, and the moves it answered
+     */
+    @Override
+    public synchronized String toString() {
+        return "Patterns size=" + patterns.size() + " hits=" + hits + " misses=" + misses + " learned=" + learned + " answered=" + answered;
+    }
+}
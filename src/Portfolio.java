@@ -0,0 +1,310 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.logicng.datastructures.Tristate;
+import org.logicng.formulas.CType;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Variable;
+import org.logicng.handlers.SATHandler;
+import org.logicng.io.parsers.ParserException;
+import org.logicng.io.parsers.PropositionalParser;
+import org.logicng.solvers.MiniSat;
+import org.logicng.solvers.SATSolver;
+import org.sat4j.core.VecInt;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.IConstr;
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.ISolverService;
+import org.sat4j.specs.SearchListenerAdapter;
+
+/**
+ * Races several SAT backends on the same frontier query and takes the first answer.
+ *
+ * Every backend parses the KB into its own FormulaFactory, because LogicNG
+ * factories are not thread-safe. The losers are cancelled through a shared flag
+ * which they check between probes and on every conflict, and the search of a
+ * SAT4J loser is also expired as soon as the race is over. SAT4J probes are
+ * limited to the time left of the race.
+ * The number of wins of each backend is kept per board class (its size). On a
+ * board class which the loaded file already has wins for, only the backend with
+ * the most of them is run, and the race is kept for the classes without data.
+ */
+public class Portfolio {
+
+    public static final String[] BACKENDS = {"minisat", "glucose", "sat4j"};
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "portfolio");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private String[] backends;
+    // Board class -> backend -> wins
+    private HashMap<String, HashMap<String, Integer>> wins;
+    // Board class -> backend -> wins read from the file, which pick the default backend
+    private HashMap<String, HashMap<String, Integer>> loaded;
+
+    /**
+     * Constructor
+     *
+     * @param backends which take part in the race
+     */
+    public Portfolio(String[] backends) {
+        this.backends = backends;
+        this.wins = new HashMap<>();
+        this.loaded = new HashMap<>();
+    }
+
+    /**
+     * Find a candidate which cannot be a tornado, with the default backend of the board class or by a race
+     *
+     * @param kb the KB as a formula string
+     * @param candidates the variables of the cells to probe, in order
+     * @param count the number of tornadoes among the candidates, or -1 if it is not used
+     * @param boardClass which the win is recorded for
+     * @param timeoutMs time limit of the race, 0 for no limit
+     * @return the index of a safe candidate, or -1 if there is none
+     * @throws InterruptedException
+     * @throws ExecutionException
+     * @throws java.util.concurrent.TimeoutException if no backend answered in time
+     */
+    public int findSafeCandidate(String kb, ArrayList<String> candidates, int count, String boardClass, long timeoutMs)
+            throws InterruptedException, ExecutionException, java.util.concurrent.TimeoutException {
+        AtomicBoolean done = new AtomicBoolean(false);
+        // SAT4J solvers of the race, whose search is stopped as soon as it is over
+        ConcurrentLinkedQueue<ISolver> solvers = new ConcurrentLinkedQueue<>();
+        long deadline = timeoutMs > 0 ? System.nanoTime() + timeoutMs * 1000000 : Long.MAX_VALUE;
+        ArrayList<Callable<int[]>> tasks = new ArrayList<>();
+        String best = getBestBackend(boardClass);
+        for (int i = 0; i < backends.length; i++) {
+            if (best != null && !backends[i].equals(best)) {
+                continue;
+            }
+            int backend = i;
+            tasks.add(() -> {
+                int[] answer = {backend, probe(backends[backend], kb, candidates, count, done, solvers, deadline)};
+                done.set(true);
+                return answer;
+            });
+        }
+        int[] answer;
+        try {
+            answer = timeoutMs > 0 ? executor.invokeAny(tasks, timeoutMs, TimeUnit.MILLISECONDS) : executor.invokeAny(tasks);
+        } finally {
+            done.set(true);
+            for (ISolver solver : solvers) {
+                solver.expireTimeout();
+            }
+        }
+        recordWin(boardClass, backends[answer[0]]);
+        return answer[1];
+    }
+
+    /**
+     * Run the probe loop on one backend
+     *
+     * @param backend name of the backend
+     * @param kb the KB as a formula string
+     * @param candidates the variables of the cells to probe
+     * @param count the number of tornadoes among the candidates, or -1 if it is not used
+     * @param done set when another backend has answered
+     * @param solvers the SAT4J solvers of the race, which the SAT4J backend adds its solver to
+     * @param deadline System.nanoTime() at which the race is given up, Long.MAX_VALUE for no limit
+     * @return the index of a safe candidate, or -1 if there is none
+     * @throws ParserException
+     * @throws ContradictionException
+     * @throws org.sat4j.specs.TimeoutException
+     * @throws InterruptedException if another backend answered first
+     */
+    private static int probe(String backend, String kb, ArrayList<String> candidates, int count, AtomicBoolean done,
+                             ConcurrentLinkedQueue<ISolver> solvers, long deadline)
+            throws ParserException, ContradictionException, org.sat4j.specs.TimeoutException, InterruptedException {
+        FormulaFactory f = new FormulaFactory();
+        Formula formula = new PropositionalParser(f).parse(kb);
+        if (backend.equals("sat4j")) {
+            DIMACS dimacs = new DIMACS();
+            int[][] clauses = dimacs.buildDIMACS(formula);
+            ISolver solver = Sat4jBackend.newSolver("default");
+            // The timeout is on time, so that it can be expired safely by the race or the listener
+            solver.setSearchListener(new RaceListener(solver, done));
+            solvers.add(solver);
+            solver.newVar(dimacs.getNumberOfVariables());
+            solver.setExpectedNumberOfClauses(clauses.length);
+            for (int[] clause : clauses) {
+                solver.addClause(new VecInt(clause));
+            }
+            if (count >= 0) {
+                VecInt literals = new VecInt(candidates.size());
+                for (String candidate : candidates) {
+                    dimacs.encodeLiteral(candidate);
+                    literals.push(dimacs.getLiterals().get(candidate));
+                }
+                solver.newVar(dimacs.getNumberOfVariables());
+                solver.addExactly(literals, count);
+            }
+            for (int i = 0; i < candidates.size(); i++) {
+                if (done.get()) {
+                    throw new InterruptedException();
+                }
+                Integer literal = dimacs.getLiterals().get(candidates.get(i));
+                if (literal == null) {
+                    continue;
+                }
+                solver.setTimeoutMs(deadline == Long.MAX_VALUE ? Integer.MAX_VALUE : Math.max(1, (deadline - System.nanoTime()) / 1000000));
+                if (!solver.isSatisfiable(new VecInt(new int[]{literal}))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        SATSolver solver = backend.equals("glucose") ? MiniSat.glucose(f) : MiniSat.miniSat(f);
+        solver.add(formula);
+        if (count >= 0) {
+            ArrayList<Variable> variables = new ArrayList<>();
+            for (String candidate : candidates) {
+                variables.add(f.variable(candidate));
+            }
+            solver.add(f.cc(CType.EQ, count, variables));
+        }
+        SATHandler handler = new SATHandler() {
+            @Override
+            public boolean detectedConflict() {
+                return !done.get();
+            }
+        };
+        for (int i = 0; i < candidates.size(); i++) {
+            Tristate result = solver.sat(handler, f.literal(candidates.get(i), true));
+            if (result == Tristate.UNDEF || done.get()) {
+                throw new InterruptedException();
+            }
+            if (result == Tristate.FALSE) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Count a win of a backend
+     *
+     * @param boardClass
+     * @param backend
+     */
+    public synchronized void recordWin(String boardClass, String backend) {
+        wins.computeIfAbsent(boardClass, k -> new HashMap<>()).merge(backend, 1, Integer::sum);
+    }
+
+    /**
+     * Return the backend taking part with the most wins on a board class in the loaded file
+     *
+     * @param boardClass
+     * @return the best backend, or null if the file has no wins for the class
+     */
+    public synchronized String getBestBackend(String boardClass) {
+        String best = null;
+        int most = 0;
+        for (Map.Entry<String, Integer> entry : loaded.getOrDefault(boardClass, new HashMap<>()).entrySet()) {
+            if (entry.getValue() > most && Arrays.asList(backends).contains(entry.getKey())) {
+                most = entry.getValue();
+                best = entry.getKey();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Add the wins saved in a file, one "class,backend,wins" line each
+     *
+     * @param path of the file
+     * @throws IOException
+     */
+    public synchronized void load(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            String[] fields = line.split(",");
+            if (fields.length == 3) {
+                wins.computeIfAbsent(fields[0], k -> new HashMap<>()).merge(fields[1], Integer.parseInt(fields[2]), Integer::sum);
+                loaded.computeIfAbsent(fields[0], k -> new HashMap<>()).merge(fields[1], Integer.parseInt(fields[2]), Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * Save the wins to a file
+     *
+     * @param path of the file
+     * @throws IOException
+     */
+    public synchronized void save(Path path) throws IOException {
+        ArrayList<String> lines = new ArrayList<>();
+        for (Map.Entry<String, HashMap<String, Integer>> boardClass : wins.entrySet()) {
+            for (Map.Entry<String, Integer> entry : boardClass.getValue().entrySet()) {
+                lines.add(boardClass.getKey() + "," + entry.getKey() + "," + entry.getValue());
+            }
+        }
+        Files.write(path, lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Override toString
+     *
+     * @return the wins of every backend per board class
+     */
+    @Override
+    public synchronized String toString() {
+        return "Portfolio wins: " + wins;
+    }
+
+    /**
+     * Expires the timeout of a SAT4J solver on the first conflict after the race is over
+     */
+    private static class RaceListener extends SearchListenerAdapter<ISolverService> {
+
+        private static final long serialVersionUID = 1L;
+
+        private transient ISolver solver;
+        private transient AtomicBoolean done;
+
+        /**
+         * Constructor
+         *
+         * @param solver whose timeout is expired
+         * @param done set when the race is over
+         */
+        RaceListener(ISolver solver, AtomicBoolean done) {
+            this.solver = solver;
+            this.done = done;
+        }
+
+        /**
+         * Check the race on a conflict
+         *
+         * @param confl
+         * @param dlevel
+         * @param trailLevel
+         */
+        @Override
+        public void conflictFound(IConstr confl, int dlevel, int trailLevel) {
+            if (done.get()) {
+                solver.expireTimeout();
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Loads a MoveLog and replays its games deterministically.
+ *
+ * Usage: java Replay <log> [game] [resume <move>]
+ * Without options every game is summarised with its slowest moves. With
+ * "resume" the agent is rebuilt up to the given move of the given game, with the
+ * seed and the options the game was played with, and then plays on from there,
+ * so that a slow move can be rerun under a profiler. The pattern store and the
+ * portfolio are loaded from their files as they are now, after the game.
+ */
+public class Replay {
+
+    private String type;
+    private String boardId;
+    // The name of the topology the game was played on
+    private String topology = "hex";
+    private int width;
+    private int height;
+    // The seed of the agent, null if the log is older than the seeds
+    private Long seed;
+    // The options of A3main the game was played with
+    private ArrayList<String> options = new ArrayList<>();
+    // The recorded outcome, null if the game did not finish
+    private GameResult.Outcome outcome;
+    private ArrayList<Integer> cellIndexes = new ArrayList<>();
+    private ArrayList<Boolean> flags = new ArrayList<>();
+    private ArrayList<String> strategies = new ArrayList<>();
+    private ArrayList<Long> solverNanos = new ArrayList<>();
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java Replay <log> [game] [resume <move>]");
+            return;
+        }
+        try {
+            ArrayList<Replay> games = load(Paths.get(args[0]));
+            if (args.length > 3 && args[2].equals("resume")) {
+                Replay replay = games.get(Integer.parseInt(args[1]));
+                Agent agent = replay.rebuild(Integer.parseInt(args[3]));
+                agent.playGame();
+                return;
+            }
+            for (int i = 0; i < games.size(); i++) {
+                if (args.length > 1 && Integer.parseInt(args[1]) != i) {
+                    continue;
+                }
+                games.get(i).printSummary(i);
+            }
+        } catch (IOException e) {
+            System.out.println("IOException: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Read every game in a log
+     *
+     * @param path of the log file
+     * @return the games in the order they were written
+     * @throws IOException
+     */
+    public static ArrayList<Replay> load(Path path) throws IOException {
+        ArrayList<Replay> games = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Replay game = null;
+            HashMap<Integer, String> names = new HashMap<>();
+            while (in.hasRemaining()) {
+                byte tag = in.get();
+                if (tag == MoveLog.TAG_GAME) {
+                    game = new Replay();
+                    game.type = MoveLog.getString(in);
+                    game.boardId = MoveLog.getString(in);
+                    game.width = (int) MoveLog.getVarint(in);
+                    game.height = (int) MoveLog.getVarint(in);
+                    games.add(game);
+                    names.clear();
+                } else if (tag == MoveLog.TAG_TOPOLOGY) {
+                    game.topology = MoveLog.getString(in);
+                } else if (tag == MoveLog.TAG_OPTIONS) {
+                    game.seed = MoveLog.getVarint(in);
+                    int n = (int) MoveLog.getVarint(in);
+                    for (int i = 0; i < n; i++) {
+                        game.options.add(MoveLog.getString(in));
+                    }
+                } else if (tag == MoveLog.TAG_STRATEGY) {
+                    int id = (int) MoveLog.getVarint(in);
+                    names.put(id, MoveLog.getString(in));
+                } else if (tag == MoveLog.TAG_UNCOVER || tag == MoveLog.TAG_FLAG) {
+                    game.readMove(in, tag == MoveLog.TAG_FLAG, names);
+                } else if (tag == MoveLog.TAG_END) {
+                    game.outcome = GameResult.Outcome.values()[in.get()];
+                } else {
+                    throw new IOException("Corrupt move log at byte " + (in.position() - 1));
+                }
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Read the body of a move record
+     *
+     * @param in
+     * @param flag
+     * @param names of the strategies
+     */
+    private void readMove(ByteBuffer in, boolean flag, HashMap<Integer, String> names) {
+        cellIndexes.add((int) MoveLog.getVarint(in));
+        flags.add(flag);
+        strategies.add(names.get((int) MoveLog.getVarint(in)));
+        solverNanos.add(MoveLog.getVarint(in));
+    }
+
+    /**
+     * Replay the first moves of the game on a fresh board
+     *
+     * @param nMoves the number of moves to apply
+     * @return the agent in the state just before move nMoves
+     * @throws IOException
+     */
+    public Agent rebuild(int nMoves) throws IOException {
+        HashMap<String, String> map = new HashMap<>();
+        for (String option : options) {
+            int eq = option.indexOf('=');
+            map.put(eq < 0 ? option : option.substring(0, eq), eq < 0 ? "" : option.substring(eq + 1));
+        }
+        map.put("topology", topology);
+        Agent agent = Tournament.createAgent(type, boardId, seed != null ? seed : System.nanoTime(), map, null);
+        agent.setHeadless(false);
+        if (map.containsKey("patterns")) {
+            PatternStore patterns = new PatternStore(PatternStore.CAPACITY);
+            patterns.load(Paths.get(map.get("patterns")));
+            agent.setPatternStore(patterns);
+        }
+        if (map.containsKey("portfolio")) {
+            Portfolio portfolio = new Portfolio(Portfolio.BACKENDS);
+            portfolio.load(Paths.get(map.get("portfolio")));
+            agent.setPortfolio(portfolio);
+        }
+        for (int i = 0; i < nMoves && i < cellIndexes.size(); i++) {
+            agent.replayMove(cellIndexes.get(i), flags.get(i), strategies.get(i));
+        }
+        return agent;
+    }
+
+    /**
+     * Print the outcome of the replayed game and its slowest moves
+     *
+     * @param number of the game in the log
+     * @throws IOException
+     */
+    public void printSummary(int number) throws IOException {
+        Agent agent = rebuild(cellIndexes.size());
+        agent.setHeadless(true);
+        agent.finishGame(false);
+        boolean matches = (outcome == GameResult.Outcome.ALIVE) == (agent.getOutcome() == GameResult.Outcome.ALIVE);
+        long total = 0;
+        ArrayList<Integer> order = new ArrayList<>();
+        for (int i = 0; i < cellIndexes.size(); i++) {
+            total += solverNanos.get(i);
+            order.add(i);
+        }
+        order.sort((a, b) -> Long.compare(solverNanos.get(b), solverNanos.get(a)));
+        System.out.println("Game " + number + ": " + type + " plays " + boardId + " (" + width + "x" + height + " " + topology
+                + (options.isEmpty() ? "" : " " + String.join(" ", options)) + "), "
+                + cellIndexes.size() + " moves, solver " + (total / 1000000.0) + " ms, " + outcome + (matches ? "" : " (replay differs)"));
+        for (int i = 0; i < Math.min(5, order.size()); i++) {
+            int move = order.get(i);
+            int index = cellIndexes.get(move);
+            System.out.println("  move " + move + ": " + (flags.get(move) ? "flag " : "uncover ") + (index % width) + " "
+                    + (index / width) + " by " + strategies.get(move) + " in " + (solverNanos.get(move) / 1000000.0) + " ms");
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.ArrayList;
+
+import org.logicng.formulas.Formula;
+import org.sat4j.core.VecInt;
+import org.sat4j.minisat.SolverFactory;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.TimeoutException;
+
+/**
+ * A SAT4J solver which lives for a whole game.
+ *
+ * Every constraint added to it stays valid until the end of the game, because
+ * it is only ever added together with the facts it was built from, so clauses
+ * are added incrementally and the clauses learned while probing one cell are
+ * kept for the next probes and the next moves. Probes are asked through the
+ * assumption interface instead of adding and removing unit clauses.
+ * The same clauses feed a unit propagator, which settles most probes without
+ * the solver.
+ */
+public class Sat4jBackend {
+
+    private ISolver solver;
+    private DIMACS dimacs;
+    // The number of clauses added so far
+    private int nClauses;
+    // Reused for every probe
+    private VecInt assumption;
+    // Fast path for the probes, over the same clauses but without the cardinality constraints
+    private UnitPropagator propagator;
+
+    /**
+     * Constructor
+     *
+     * @param config of the solver: default, glucose or light
+     */
+    public Sat4jBackend(String config) {
+        this.solver = newSolver(config);
+        this.dimacs = new DIMACS();
+        this.assumption = new VecInt(1);
+        this.propagator = new UnitPropagator();
+    }
+
+    /**
+     * Create a SAT4J solver
+     *
+     * @param config of the solver: default, glucose or light
+     * @return the solver
+     */
+    public static ISolver newSolver(String config) {
+        switch (config) {
+            case "glucose":
+                return SolverFactory.newGlucose21();
+            case "light":
+                return SolverFactory.newLight();
+            default:
+                return SolverFactory.newDefault();
+        }
+    }
+
+    /**
+     * Add a formula, sized from the variables and clauses it really has
+     *
+     * @param formula which holds for the rest of the game
+     * @throws ContradictionException
+     */
+    public void addFormula(Formula formula) throws ContradictionException {
+        int[][] clauses = dimacs.appendDIMACS(formula);
+        solver.newVar(dimacs.getNumberOfVariables());
+        nClauses += clauses.length;
+        solver.setExpectedNumberOfClauses(nClauses);
+        for (int[] clause : clauses) {
+            solver.addClause(new VecInt(clause));
+            propagator.addClause(clause);
+        }
+    }
+
+    /**
+     * Add a native cardinality constraint, which SAT4J handles without a CNF encoding
+     *
+     * @param variables names of the variables
+     * @param k the number of variables which are true
+     * @throws ContradictionException
+     */
+    public void addExactly(ArrayList<String> variables, int k) throws ContradictionException {
+        VecInt literals = new VecInt(variables.size());
+        for (String variable : variables) {
+            dimacs.encodeLiteral(variable);
+            literals.push(getLiteral(variable));
+        }
+        solver.newVar(dimacs.getNumberOfVariables());
+        nClauses++;
+        solver.addExactly(literals, k);
+    }
+
+    /**
+     * Add a fact about a variable which is already known to the solver
+     *
+     * @param variable name of the variable
+     * @param value true for a tornado
+     * @throws ContradictionException
+     */
+    public void addFact(String variable, boolean value) throws ContradictionException {
+        Integer literal = getLiteral(variable);
+        if (literal != null) {
+            nClauses++;
+            solver.addClause(new VecInt(new int[]{value ? literal : -literal}));
+            propagator.addClause(new int[]{value ? literal : -literal});
+        }
+    }
+
+    /**
+     * Return the literal of a variable
+     *
+     * @param variable name of the variable
+     * @return the literal, or null if the variable does not occur in any clause
+     */
+    public Integer getLiteral(String variable) {
+        return dimacs.getLiterals().get(variable);
+    }
+
+    /**
+     * Check the satisfiability under a single assumption
+     *
+     * @param literal which is assumed
+     * @return true if the clauses and the literal are satisfiable
+     * @throws TimeoutException
+     */
+    public boolean isSatisfiable(int literal) throws TimeoutException {
+        assumption.clear();
+        assumption.push(literal);
+        return solver.isSatisfiable(assumption);
+    }
+
+    /**
+     * Check by unit propagation alone whether a literal is refuted
+     *
+     * @param literal which is assumed
+     * @return true if the literal is refuted, false if the solver has to decide
+     */
+    public boolean isFailedLiteral(int literal) {
+        return propagator.isFailed(literal);
+    }
+
+    /**
+     * Return the model found by the last satisfiable probe
+     *
+     * @return the literals of the model
+     */
+    public int[] getModel() {
+        return solver.model();
+    }
+
+    /**
+     * Getter
+     *
+     * @return the underlying solver
+     */
+    public ISolver getSolver() {
+        return solver;
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.ArrayList;
+
+/**
+ * A square board where a cell touches its eight surrounding cells.
+ */
+public class SquareTopology extends Topology {
+
+    /**
+     * Constructor
+     *
+     * @param width
+     * @param height
+     */
+    public SquareTopology(int width, int height) {
+        super(width, height);
+        build();
+    }
+
+    /**
+     * Getter
+     *
+     * @return "square"
+     */
+    @Override
+    public String getName() {
+        return "square";
+    }
+
+    /**
+     * Add the eight square neighbours
+     *
+     * @param x
+     * @param y
+     * @param neighbours indexes of the neighbouring cells
+     */
+    @Override
+    protected void addNeighbours(int x, int y, ArrayList<Integer> neighbours) {
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                int nx = x + dx;
+                int ny = y + dy;
+                if ((dx != 0 || dy != 0) && nx >= 0 && ny >= 0 && nx < width && ny < height) {
+                    neighbours.add(index(nx, ny));
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the offsets of the eight square neighbours
+     *
+     * @return dx, dy of every neighbour
+     */
+    @Override
+    public int[] getStencil() {
+        return new int[]{-1, -1, 0, -1, 1, -1, -1, 0, 1, 0, -1, 1, 0, 1, 1, 1};
+    }
+
+    /**
+     * Return the number of symmetries of the square: four rotations, each with or without a reflection
+     *
+     * @return 8
+     */
+    @Override
+    public int getSymmetries() {
+        return 8;
+    }
+
+    /**
+     * Map a position by a symmetry of the square. A quarter turn is (x, y) -> (-y, x),
+     * and swapping x and y is a reflection.
+     *
+     * @param symmetry the reflection in the lowest bit, the number of rotations above it
+     * @param x
+     * @param y
+     * @return {x, y} of the image
+     */
+    @Override
+    public int[] transform(int symmetry, int x, int y) {
+        if ((symmetry & 1) == 1) {
+            int swap = x;
+            x = y;
+            y = swap;
+        }
+        for (int r = 0; r < symmetry >> 1; r++) {
+            int rotated = -y;
+            y = x;
+            x = rotated;
+        }
+        return new int[]{x, y};
+    }
+}
@@ -0,0 +1,255 @@
+/**
+ * Confidence intervals and significance tests for comparing agents.
+ *
+ * Win rates are proportions, so they get the Wilson score interval, which stays
+ * inside [0, 1] and behaves for rates near 0 or 1 and for few games. Means get
+ * Student's t interval. Two agents played on the same boards and seeds are
+ * compared pairwise: McNemar's exact test on the games only one of them won, and
+ * a paired t-test on the differences of a measure.
+ */
+public class Statistics {
+
+    // 0.975 quantile of the standard normal distribution, for 95% intervals
+    public static final double Z_95 = 1.959963984540054;
+
+    /**
+     * Return the mean
+     *
+     * @param values
+     * @return the mean, 0 if there are none
+     */
+    public static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return values.length == 0 ? 0 : sum / values.length;
+    }
+
+    /**
+     * Return the sample standard deviation
+     *
+     * @param values
+     * @return the standard deviation, 0 if there are fewer than two values
+     */
+    public static double standardDeviation(double[] values) {
+        if (values.length < 2) {
+            return 0;
+        }
+        double mean = mean(values);
+        double sum = 0;
+        for (double value : values) {
+            sum += (value - mean) * (value - mean);
+        }
+        return Math.sqrt(sum / (values.length - 1));
+    }
+
+    /**
+     * Return the Wilson score interval of a proportion
+     *
+     * @param successes
+     * @param n the number of trials
+     * @param z quantile of the confidence level, e.g. Z_95
+     * @return {low, high}
+     */
+    public static double[] wilson(int successes, int n, double z) {
+        if (n == 0) {
+            return new double[]{0, 1};
+        }
+        double p = (double) successes / n;
+        double z2 = z * z;
+        double center = (p + z2 / (2 * n)) / (1 + z2 / n);
+        double half = z / (1 + z2 / n) * Math.sqrt(p * (1 - p) / n + z2 / (4.0 * n * n));
+        return new double[]{Math.max(0, center - half), Math.min(1, center + half)};
+    }
+
+    /**
+     * Return the half-width of the t confidence interval of a mean
+     *
+     * @param values
+     * @param confidence e.g. 0.95
+     * @return the half-width, 0 if there are fewer than two values
+     */
+    public static double tHalfWidth(double[] values, double confidence) {
+        if (values.length < 2) {
+            return 0;
+        }
+        double t = tQuantile(1 - (1 - confidence) / 2, values.length - 1);
+        return t * standardDeviation(values) / Math.sqrt(values.length);
+    }
+
+    /**
+     * Paired t-test on the differences of two measures
+     *
+     * @param a measure of the first agent
+     * @param b measure of the second agent, on the same games
+     * @return {mean of a - b, half-width of its 95% interval, two-sided p-value}
+     */
+    public static double[] pairedT(double[] a, double[] b) {
+        double[] differences = new double[a.length];
+        for (int i = 0; i < a.length; i++) {
+            differences[i] = a[i] - b[i];
+        }
+        double mean = mean(differences);
+        if (differences.length < 2) {
+            return new double[]{mean, 0, 1};
+        }
+        double sd = standardDeviation(differences);
+        double halfWidth = tHalfWidth(differences, 0.95);
+        if (sd == 0) {
+            return new double[]{mean, 0, mean == 0 ? 1 : 0};
+        }
+        double t = mean / (sd / Math.sqrt(differences.length));
+        return new double[]{mean, halfWidth, 2 * (1 - tCdf(Math.abs(t), differences.length - 1))};
+    }
+
+    /**
+     * McNemar's exact test: under the null hypothesis a game which only one agent
+     * won is equally likely to have been won by either
+     *
+     * @param onlyA the number of games only the first agent won
+     * @param onlyB the number of games only the second agent won
+     * @return two-sided p-value
+     */
+    public static double mcnemar(int onlyA, int onlyB) {
+        int n = onlyA + onlyB;
+        int k = Math.min(onlyA, onlyB);
+        double p = 0;
+        for (int i = 0; i <= k; i++) {
+            p += Math.exp(logBinomial(n, i) - n * Math.log(2));
+        }
+        return Math.min(1, 2 * p);
+    }
+
+    /**
+     * Return the cumulative distribution function of Student's t distribution
+     *
+     * @param t
+     * @param df degrees of freedom
+     * @return P(T <= t)
+     */
+    public static double tCdf(double t, int df) {
+        double x = df / (df + t * t);
+        double tail = 0.5 * incompleteBeta(df / 2.0, 0.5, x);
+        return t > 0 ? 1 - tail : tail;
+    }
+
+    /**
+     * Return a quantile of Student's t distribution, by bisection on its distribution function
+     *
+     * @param p probability, above 0.5
+     * @param df degrees of freedom
+     * @return t such that P(T <= t) = p
+     */
+    public static double tQuantile(double p, int df) {
+        double low = 0;
+        double high = 1;
+        while (tCdf(high, df) < p) {
+            high *= 2;
+        }
+        for (int i = 0; i < 100; i++) {
+            double middle = (low + high) / 2;
+            if (tCdf(middle, df) < p) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return (low + high) / 2;
+    }
+
+    /**
+     * Return the regularized incomplete beta function I_x(a, b), from its continued fraction
+     *
+     * @param a
+     * @param b
+     * @param x in [0, 1]
+     * @return I_x(a, b)
+     */
+    public static double incompleteBeta(double a, double b, double x) {
+        if (x <= 0) {
+            return 0;
+        }
+        if (x >= 1) {
+            return 1;
+        }
+        double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log(1 - x));
+        // The continued fraction converges quickly on this side, and symmetry gives the other
+        if (x < (a + 1) / (a + b + 2)) {
+            return front * betaFraction(a, b, x) / a;
+        }
+        return 1 - front * betaFraction(b, a, 1 - x) / b;
+    }
+
+    /**
+     * Evaluate the continued fraction of the incomplete beta function by the modified Lentz method
+     *
+     * @param a
+     * @param b
+     * @param x
+     * @return the value of the fraction
+     */
+    private static double betaFraction(double a, double b, double x) {
+        double tiny = 1e-300;
+        double c = 1;
+        double d = 1 / nonZero(1 - (a + b) * x / (a + 1), tiny);
+        double h = d;
+        for (int m = 1; m <= 300; m++) {
+            int m2 = 2 * m;
+            double numerator = m * (b - m) * x / ((a + m2 - 1) * (a + m2));
+            d = 1 / nonZero(1 + numerator * d, tiny);
+            c = nonZero(1 + numerator / c, tiny);
+            h *= d * c;
+            numerator = -(a + m) * (a + b + m) * x / ((a + m2) * (a + m2 + 1));
+            d = 1 / nonZero(1 + numerator * d, tiny);
+            c = nonZero(1 + numerator / c, tiny);
+            double delta = d * c;
+            h *= delta;
+            if (Math.abs(delta - 1) < 1e-15) {
+                break;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Keep a denominator of the continued fraction away from 0
+     *
+     * @param value
+     * @param tiny the smallest magnitude allowed
+     * @return the value, or tiny if it is smaller
+     */
+    private static double nonZero(double value, double tiny) {
+        return Math.abs(value) < tiny ? tiny : value;
+    }
+
+    /**
+     * Return the natural logarithm of the gamma function, by the Lanczos approximation
+     *
+     * @param x above 0
+     * @return ln Gamma(x)
+     */
+    public static double logGamma(double x) {
+        double[] coefficients = {76.18009172947146, -86.50532032941677, 24.01409824083091,
+                -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5};
+        double y = x;
+        double tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+        double series = 1.000000000190015;
+        for (double coefficient : coefficients) {
+            series += coefficient / ++y;
+        }
+        return -tmp + Math.log(2.5066282746310005 * series / x);
+    }
+
+    /**
+     * Return the natural logarithm of a binomial coefficient
+     *
+     * @param n
+     * @param k
+     * @return ln C(n, k)
+     */
+    public static double logBinomial(int n, int k) {
+        return logGamma(n + 1) - logGamma(k + 1) - logGamma(n - k + 1);
+    }
+}
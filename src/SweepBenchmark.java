@@ -0,0 +1,53 @@
+/**
+ * Compares the SPS scan of the agent, cell by cell, with the board-wide sweep of NeighbourCountKernel.
+ *
+ * The SPS agent is played to the end on a large board first, so that no cell is
+ * left in an AFN or AMN situation. That is the worst case of both searches: the
+ * scan has to look at every unproved cell and the sweep at every cell, and it is
+ * the search every SPS game and every RP guess of P6 ends with. Run it with
+ * and without --add-modules jdk.incubator.vector to compare the Vector API rows
+ * of the sweep with its scalar loops.
+ */
+public class SweepBenchmark {
+
+    /**
+     * Run the benchmark
+     *
+     * @param args [board id] [topology] [repetitions], e.g. GEN512x512::1 hex 50
+     */
+    public static void main(String[] args) {
+        String boardId = args.length > 0 ? args[0] : "GEN512x512::1";
+        String topologyName = args.length > 1 ? args[1] : "hex";
+        int nRepetitions = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int[] size = BoardGenerator.getSize(boardId);
+        Topology topology = Topology.create(topologyName, size[0], size[1]);
+        Agent agent = new Agent("P2", false, new Game(BoardGenerator.loadView(boardId, topology), topology));
+        agent.setHeadless(true);
+        NeighbourCountKernel kernel = new NeighbourCountKernel(topology);
+        agent.setKernel(kernel);
+        agent.playGame();
+        // Warm up both, then time them
+        for (int round = 0; round < 2; round++) {
+            long scanNanos = 0;
+            long sweepNanos = 0;
+            for (int i = 0; i < nRepetitions; i++) {
+                long start = System.nanoTime();
+                Cell cell = agent.findSPSCell();
+                long middle = System.nanoTime();
+                int found = kernel.sweep();
+                long end = System.nanoTime();
+                if (cell != null || found != 0) {
+                    System.out.println("The game did not end in a fixpoint");
+                    return;
+                }
+                scanNanos += middle - start;
+                sweepNanos += end - middle;
+            }
+            if (round == 1) {
+                System.out.println("Board " + boardId + " " + topologyName + " cells=" + size[0] * size[1]);
+                System.out.printf("scan  %.3f ms%n", scanNanos / 1e6 / nRepetitions);
+                System.out.printf("sweep %.3f ms (%s loops)%n", sweepNanos / 1e6 / nRepetitions, NeighbourCountKernel.getLoops());
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+import java.util.ArrayList;
+
+/**
+ * Neighbourhood of the cells of a board.
+ *
+ * The neighbours of every cell are computed once and stored in a CSR-style
+ * layout: the neighbours of cell i are adjacency[offsets[i]] up to
+ * adjacency[offsets[i + 1] - 1], where cells are indexed y * width + x.
+ * Walking the neighbours of a cell is then a plain array walk.
+ */
+public abstract class Topology {
+
+    protected int width;
+    protected int height;
+    protected int[] offsets;
+    protected int[] adjacency;
+
+    /**
+     * Constructor
+     *
+     * @param width
+     * @param height
+     */
+    protected Topology(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Create a topology by name
+     *
+     * @param name hex, square or torus
+     * @param width
+     * @param height
+     * @return the topology
+     * @throws IllegalArgumentException if the name is none of them
+     */
+    public static Topology create(String name, int width, int height) {
+        switch (name) {
+            case "hex":
+                return new HexTopology(width, height);
+            case "square":
+                return new SquareTopology(width, height);
+            case "torus":
+                return new TorusTopology(width, height);
+            default:
+                throw new IllegalArgumentException("unknown topology: " + name + " (hex, square or torus)");
+        }
+    }
+
+    /**
+     * Getter
+     *
+     * @return the name which create() takes
+     */
+    public abstract String getName();
+
+    /**
+     * Add the neighbours of a cell, in a fixed order
+     *
+     * @param x
+     * @param y
+     * @param neighbours indexes of the neighbouring cells
+     */
+    protected abstract void addNeighbours(int x, int y, ArrayList<Integer> neighbours);
+
+    /**
+     * Precompute the adjacency of every cell
+     */
+    protected void build() {
+        int nCells = width * height;
+        offsets = new int[nCells + 1];
+        ArrayList<Integer> all = new ArrayList<>();
+        ArrayList<Integer> neighbours = new ArrayList<>();
+        for (int i = 0; i < nCells; i++) {
+            offsets[i] = all.size();
+            neighbours.clear();
+            addNeighbours(i % width, i / width, neighbours);
+            for (int neighbour : neighbours) {
+                // A small torus can reach the same cell by two wraps
+                if (neighbour != i && !all.subList(offsets[i], all.size()).contains(neighbour)) {
+                    all.add(neighbour);
+                }
+            }
+        }
+        offsets[nCells] = all.size();
+        adjacency = new int[all.size()];
+        for (int i = 0; i < adjacency.length; i++) {
+            adjacency[i] = all.get(i);
+        }
+    }
+
+    /**
+     * Return the index of a cell
+     *
+     * @param x
+     * @param y
+     * @return y * width + x
+     */
+    public int index(int x, int y) {
+        return y * width + x;
+    }
+
+    /**
+     * Return the first position of the neighbours of a cell in the adjacency
+     *
+     * @param index of the cell
+     * @return the start offset
+     */
+    public int getStart(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * Return the position after the neighbours of a cell in the adjacency
+     *
+     * @param index of the cell
+     * @return the end offset
+     */
+    public int getEnd(int index) {
+        return offsets[index + 1];
+    }
+
+    /**
+     * Getter
+     *
+     * @return the adjacency array
+     */
+    public int[] getAdjacency() {
+        return adjacency;
+    }
+
+    /**
+     * Getter
+     *
+     * @return width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Getter
+     *
+     * @return height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Check whether the board wraps around its edges
+     *
+     * @return true if it does
+     */
+    public boolean wraps() {
+        return false;
+    }
+
+    /**
+     * Return the offsets of the neighbours of a cell, for sweeps over whole rows.
+     * A cell near the edge has the neighbours whose offsets stay on the board.
+     *
+     * @return dx, dy of every neighbour, or null if the neighbours are not fixed offsets
+     */
+    public int[] getStencil() {
+        return null;
+    }
+
+    /**
+     * Return the number of symmetries of the neighbourhood: rotations and reflections
+     * which map the neighbours of every cell to the neighbours of its image
+     *
+     * @return the number of symmetries, the identity included
+     */
+    public int getSymmetries() {
+        return 1;
+    }
+
+    /**
+     * Map a position by a symmetry of the neighbourhood. The image may lie off the board;
+     * only the offsets between positions are meaningful.
+     *
+     * @param symmetry from 0, the identity, to getSymmetries() - 1
+     * @param x
+     * @param y
+     * @return {x, y} of the image
+     */
+    public int[] transform(int symmetry, int x, int y) {
+        return new int[]{x, y};
+    }
+}
@@ -0,0 +1,57 @@
+import java.util.ArrayList;
+
+/**
+ * A square board with eight neighbours whose edges wrap around,
+ * so every cell has the same number of neighbours.
+ */
+public class TorusTopology extends Topology {
+
+    /**
+     * Constructor
+     *
+     * @param width
+     * @param height
+     */
+    public TorusTopology(int width, int height) {
+        super(width, height);
+        build();
+    }
+
+    /**
+     * Getter
+     *
+     * @return "torus"
+     */
+    @Override
+    public String getName() {
+        return "torus";
+    }
+
+    /**
+     * Add the eight neighbours, wrapping around the edges
+     *
+     * @param x
+     * @param y
+     * @param neighbours indexes of the neighbouring cells
+     */
+    @Override
+    protected void addNeighbours(int x, int y, ArrayList<Integer> neighbours) {
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                if (dx != 0 || dy != 0) {
+                    neighbours.add(index((x + dx + width) % width, (y + dy + height) % height));
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether the board wraps around its edges
+     *
+     * @return true
+     */
+    @Override
+    public boolean wraps() {
+        return true;
+    }
+}
@@ -0,0 +1,407 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays every agent on every board of a set for a number of seeds, in parallel,
+ * and reports how the agents compare.
+ *
+ * The seed seeds the random probing of P5 to P8, and picks the board of a
+ * generated board id without a seed of its own, so every agent meets exactly the
+ * same games. An agent only plays a board for every seed if a seed changes its
+ * game, that is if the board is generated without a seed or the agent probes at
+ * random; otherwise it plays the board once, as the seeds would replay the same
+ * game and count it as independent evidence. Each agent gets its win rate with a
+ * Wilson interval, and its moves, solver calls and wall time with t intervals,
+ * over its distinct games. Every pair of agents is then compared game by game:
+ * McNemar's test on the wins, and paired t-tests on the wall time and the moves.
+ * On a board which one agent plays once and the other for every seed, the one
+ * game is compared with each of the other's. Games run concurrently, so wall times include the
+ * contention of the other threads; use threads=1 when timing is the question.
+ * The games of P9 in one tournament share a cost model, which chooses the solver
+ * stage of every move by the wall times measured so far. Its moves, and so its
+ * results, depend on the speed of the machine, on the other threads, and on the
+ * order in which its games happen to run, so they do not repeat exactly.
+ *
+ * Usage: java Tournament agents=P1,P2,... boards=<set> [seeds=n] [threads=n] [csv=<file>]
+ *        [topology=<name>] [sat4j=<config>] [budget=<ms>] [conflicts=<n>] [count] [compile] [sweep] [guess=<ms>]
+ * where the board set is "worlds", a BoardCorpus file, or a comma-separated list of board ids.
+ */
+public class Tournament {
+
+    private ArrayList<String> agents;
+    private ArrayList<String> boards;
+    private int nSeeds;
+    // Options of A3main which every game is played with
+    private HashMap<String, String> options;
+    // Agent -> result of every game, by board and seed
+    private HashMap<String, GameResult[][]> results;
+    // Cost model of P9, shared by its games in this tournament so that what one game learns serves the next
+    private CostModel costModel;
+
+    /**
+     * Constructor
+     *
+     * @param agents the agent types
+     * @param boards the board ids
+     * @param nSeeds the number of seeds of a game which they change
+     * @param options of every game
+     */
+    public Tournament(ArrayList<String> agents, ArrayList<String> boards, int nSeeds, HashMap<String, String> options) {
+        this.agents = agents;
+        this.boards = boards;
+        this.nSeeds = nSeeds;
+        this.options = options;
+        this.costModel = new CostModel();
+        this.results = new HashMap<>();
+        for (String agent : agents) {
+            GameResult[][] played = new GameResult[boards.size()][];
+            for (int b = 0; b < boards.size(); b++) {
+                played[b] = new GameResult[isSeeded(agent, boards.get(b)) ? nSeeds : 1];
+            }
+            results.put(agent, played);
+        }
+    }
+
+    /**
+     * Check whether the seed changes the game of an agent on a board
+     *
+     * @param agent the agent type
+     * @param boardId of the board set
+     * @return true if the board is generated without a seed or the agent probes at random
+     */
+    public boolean isSeeded(String agent, String boardId) {
+        return !getBoardId(boardId, 0).equals(boardId) || isRandom(agent, options);
+    }
+
+    /**
+     * Check whether an agent probes at random, so that its seed changes its games
+     *
+     * @param type of the agent
+     * @param options of the game
+     * @return true for P5 to P8 without a guess policy
+     */
+    public static boolean isRandom(String type, HashMap<String, String> options) {
+        boolean probes = type.equals("P5") || type.equals("P6") || type.equals("P7") || type.equals("P8");
+        return probes && Long.parseLong(options.getOrDefault("guess", "0")) <= 0;
+    }
+
+    /**
+     * Play every game
+     *
+     * @param nThreads the number of games played at once
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public void run(int nThreads) throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            ArrayList<Future<?>> futures = new ArrayList<>();
+            for (String agent : agents) {
+                GameResult[][] played = results.get(agent);
+                for (int b = 0; b < boards.size(); b++) {
+                    GameResult[] seeds = played[b];
+                    for (int seed = 0; seed < seeds.length; seed++) {
+                        int s = seed;
+                        String boardId = getBoardId(boards.get(b), seed);
+                        futures.add(executor.submit(() -> {
+                            seeds[s] = play(agent, boardId, s, options, costModel);
+                        }));
+                    }
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Return the board of a game. A generated board without a seed gets the seed of the game.
+     *
+     * @param boardId of the board set
+     * @param seed of the game
+     * @return the board id to play
+     */
+    public static String getBoardId(String boardId, int seed) {
+        if (boardId.startsWith("GEN") && boardId.split(":").length < 3) {
+            return boardId + (boardId.contains(":") ? ":" : "::") + seed;
+        }
+        return boardId;
+    }
+
+    /**
+     * Play one game headless
+     *
+     * @param type of the agent
+     * @param boardId of the board
+     * @param seed of the random probing strategy
+     * @param options of the game
+     * @param costModel of P9, or null for a model of the game's own
+     * @return the result
+     */
+    public static GameResult play(String type, String boardId, long seed, HashMap<String, String> options, CostModel costModel) {
+        return createAgent(type, boardId, seed, options, costModel).playGame();
+    }
+
+    /**
+     * Create a headless agent for a game
+     *
+     * @param type of the agent
+     * @param boardId of the board
+     * @param seed of the random probing strategy
+     * @param options of the game
+     * @param costModel of P9, shared by the games it is passed to, or null for a model of the game's own
+     * @return the agent
+     */
+    public static Agent createAgent(String type, String boardId, long seed, HashMap<String, String> options,
+                                    CostModel costModel) {
+        int[] size = BoardGenerator.getSize(boardId);
+        Topology topology = Topology.create(options.getOrDefault("topology", "hex"), size[0], size[1]);
+        Agent agent = new Agent(type, false, new Game(BoardGenerator.loadView(boardId, topology), topology));
+        agent.setHeadless(true);
+        agent.setSeed(seed);
+        agent.setSatConfig(options.getOrDefault("sat4j", "default"));
+        agent.setUseTornadoCount(options.containsKey("count"));
+        agent.setCostModel(costModel);
+        if (options.containsKey("compile")) {
+            agent.setCompiler(new FrontierCompiler());
+        }
+        if (options.containsKey("sweep")) {
+            agent.setKernel(new NeighbourCountKernel(topology));
+        }
+        long guessMs = Long.parseLong(options.getOrDefault("guess", "0"));
+        if (guessMs > 0) {
+            agent.setGuessPolicy(new GainPolicy(guessMs));
+        }
+        long budgetMs = Long.parseLong(options.getOrDefault("budget", "0"));
+        int budgetConflicts = Integer.parseInt(options.getOrDefault("conflicts", "0"));
+        if (budgetMs > 0 || budgetConflicts > 0) {
+            agent.setBudget(new MoveBudget(budgetMs, budgetConflicts));
+        }
+        return agent;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the cost model of P9
+     */
+    public CostModel getCostModel() {
+        return costModel;
+    }
+
+    /**
+     * Print the summary of every agent and the comparison of every pair
+     */
+    public void report() {
+        System.out.println("Tournament: " + boards.size() + " boards x up to " + nSeeds
+                + " seeds, an agent replaying a board only for the seeds which change its game, 95% intervals");
+        System.out.println(String.format("%-4s %6s %22s %18s %18s %22s", "", "games", "win rate", "moves", "solver calls", "wall ms"));
+        for (String agent : agents) {
+            GameResult[] games = getGames(agent, null);
+            int wins = 0;
+            for (GameResult game : games) {
+                if (game.isWon()) {
+                    wins++;
+                }
+            }
+            double[] interval = Statistics.wilson(wins, games.length, Statistics.Z_95);
+            System.out.println(String.format("%-4s %6d %6.1f%% [%5.1f, %5.1f] %18s %18s %22s", agent, games.length,
+                    100.0 * wins / games.length, 100 * interval[0], 100 * interval[1],
+                    formatMean(getMeasure(games, "moves")), formatMean(getMeasure(games, "solverCalls")),
+                    formatMean(getMeasure(games, "wallMs"))));
+        }
+        if (agents.size() < 2) {
+            return;
+        }
+        System.out.println();
+        System.out.println("Paired comparisons (A - B): wins by McNemar's exact test, the rest by paired t-tests");
+        for (int i = 0; i < agents.size(); i++) {
+            for (int j = i + 1; j < agents.size(); j++) {
+                printComparison(agents.get(i), agents.get(j));
+            }
+        }
+    }
+
+    /**
+     * Print the comparison of two agents on the same games
+     *
+     * @param a the first agent
+     * @param b the second agent
+     */
+    private void printComparison(String a, String b) {
+        GameResult[] gamesA = getGames(a, b);
+        GameResult[] gamesB = getGames(b, a);
+        int onlyA = 0;
+        int onlyB = 0;
+        for (int k = 0; k < gamesA.length; k++) {
+            if (gamesA[k].isWon() && !gamesB[k].isWon()) {
+                onlyA++;
+            } else if (!gamesA[k].isWon() && gamesB[k].isWon()) {
+                onlyB++;
+            }
+        }
+        double[] wallMs = Statistics.pairedT(getMeasure(gamesA, "wallMs"), getMeasure(gamesB, "wallMs"));
+        double[] moves = Statistics.pairedT(getMeasure(gamesA, "moves"), getMeasure(gamesB, "moves"));
+        System.out.println(String.format("%s - %s: wins only %d vs %d p=%.4f%s | wall ms %+.1f +- %.1f p=%.4f%s | moves %+.1f +- %.1f p=%.4f%s",
+                a, b, onlyA, onlyB, Statistics.mcnemar(onlyA, onlyB), mark(Statistics.mcnemar(onlyA, onlyB)),
+                wallMs[0], wallMs[1], wallMs[2], mark(wallMs[2]), moves[0], moves[1], moves[2], mark(moves[2])));
+    }
+
+    /**
+     * Mark a significant difference
+     *
+     * @param p the p-value
+     * @return " *" if p < 0.05, otherwise ""
+     */
+    private static String mark(double p) {
+        return p < 0.05 ? " *" : "";
+    }
+
+    /**
+     * Format a mean with the half-width of its interval
+     *
+     * @param values
+     * @return "mean +- half-width"
+     */
+    private static String formatMean(double[] values) {
+        return String.format("%.1f +- %.1f", Statistics.mean(values), Statistics.tHalfWidth(values, 0.95));
+    }
+
+    /**
+     * Return the games of an agent, each distinct game once, or paired with the games of another agent.
+     * On a board which the agent plays once and the other agent for every seed, its one game is
+     * paired with each game of the other.
+     *
+     * @param agent
+     * @param other the agent to pair the games with, or null
+     * @return the results, by board and seed
+     */
+    private GameResult[] getGames(String agent, String other) {
+        GameResult[][] played = results.get(agent);
+        ArrayList<GameResult> games = new ArrayList<>();
+        for (int b = 0; b < played.length; b++) {
+            int n = other == null ? played[b].length : Math.max(played[b].length, results.get(other)[b].length);
+            for (int seed = 0; seed < n; seed++) {
+                games.add(played[b][played[b].length == 1 ? 0 : seed]);
+            }
+        }
+        return games.toArray(new GameResult[0]);
+    }
+
+    /**
+     * Return a measure of games
+     *
+     * @param games
+     * @param measure moves, solverCalls or wallMs
+     * @return the values, in game order
+     */
+    private static double[] getMeasure(GameResult[] games, String measure) {
+        double[] values = new double[games.length];
+        for (int k = 0; k < games.length; k++) {
+            switch (measure) {
+                case "moves":
+                    values[k] = games[k].getMoves();
+                    break;
+                case "solverCalls":
+                    values[k] = games[k].getSolverCalls();
+                    break;
+                default:
+                    values[k] = games[k].getTotalNanos() / 1e6;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Write the result of every game, one line each
+     *
+     * @param path of the CSV file
+     * @throws IOException
+     */
+    public void writeCsv(String path) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8))) {
+            out.println("agent,board,seed,outcome,moves,solverCalls,solverMs,totalMs");
+            for (String agent : agents) {
+                GameResult[][] played = results.get(agent);
+                for (int b = 0; b < played.length; b++) {
+                    for (int seed = 0; seed < played[b].length; seed++) {
+                        GameResult game = played[b][seed];
+                        out.println(agent + "," + getBoardId(boards.get(b), seed) + "," + seed + ","
+                                + game.getOutcome() + "," + game.getMoves() + "," + game.getSolverCalls() + ","
+                                + game.getSolverNanos() / 1e6 + "," + game.getTotalNanos() / 1e6);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the board ids of a board set
+     *
+     * @param set "worlds", a BoardCorpus file, or a comma-separated list of board ids
+     * @return the board ids
+     * @throws IOException
+     */
+    public static ArrayList<String> getBoards(String set) throws IOException {
+        ArrayList<String> boards = new ArrayList<>();
+        if (set.equals("worlds")) {
+            for (World world : World.values()) {
+                boards.add(world.name());
+            }
+        } else if (!set.startsWith("GEN") && !set.contains(",") && Files.isRegularFile(Paths.get(set))) {
+            int size = BoardCorpus.open(Paths.get(set)).size();
+            for (int i = 0; i < size; i++) {
+                boards.add(set + "#" + i);
+            }
+        } else {
+            boards.addAll(Arrays.asList(set.split(",")));
+        }
+        return boards;
+    }
+
+    /**
+     * Run a tournament
+     *
+     * @param args agents=P1,P2,... boards=<set> [seeds=n] [threads=n] [csv=<file>] and the options of the games
+     */
+    public static void main(String[] args) {
+        HashMap<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            options.put(eq < 0 ? arg : arg.substring(0, eq), eq < 0 ? "" : arg.substring(eq + 1));
+        }
+        ArrayList<String> agents = new ArrayList<>(Arrays.asList(options.getOrDefault("agents", "P1,P2,P3,P4").split(",")));
+        int nSeeds = Integer.parseInt(options.getOrDefault("seeds", "1"));
+        int nThreads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        try {
+            Tournament tournament = new Tournament(agents, getBoards(options.getOrDefault("boards", "worlds")), nSeeds, options);
+            tournament.run(nThreads);
+            tournament.report();
+            if (agents.contains("P9")) {
+                System.out.println(tournament.getCostModel());
+            }
+            if (options.containsKey("csv")) {
+                tournament.writeCsv(options.get("csv"));
+            }
+        } catch (IOException e) {
+            System.out.println("IOException: " + e.getMessage());
+        } catch (InterruptedException e) {
+            System.out.println("InterruptedException: " + e.getMessage());
+        } catch (ExecutionException e) {
+            System.out.println("ExecutionException: " + e.getMessage());
+        }
+    }
+}
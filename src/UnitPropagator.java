@@ -0,0 +1,232 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Two-watched-literal unit propagator over the DIMACS clauses of the KB.
+ *
+ * Clauses are added incrementally, as they are to the SAT4J solver, and are
+ * propagated at the top level straight away. A literal which leads to a conflict
+ * by propagation alone is failed, so the cell behind it cannot be a tornado and
+ * the solver does not have to be asked. The propagator is sound but incomplete:
+ * a literal which does not fail here may still be refuted by the solver.
+ */
+public class UnitPropagator {
+
+    // Clauses of two or more literals. The first two literals of each are watched.
+    private ArrayList<int[]> clauses;
+    // Literal index -> the clauses watching it
+    private int[][] watches;
+    private int[] nWatches;
+    // Variable -> 1 if true, -1 if false, 0 if unassigned
+    private byte[] values;
+    private int[] trail;
+    private int trailSize;
+    // The next trail entry to propagate
+    private int head;
+    // True once the top level is contradictory
+    private boolean inconsistent;
+
+    /**
+     * Constructor
+     */
+    public UnitPropagator() {
+        this.clauses = new ArrayList<>();
+        this.watches = new int[0][];
+        this.nWatches = new int[0];
+        this.values = new byte[1];
+        this.trail = new int[16];
+    }
+
+    /**
+     * Add a clause and propagate its consequences at the top level
+     *
+     * @param clause in DIMACS form
+     */
+    public void addClause(int[] clause) {
+        if (inconsistent) {
+            return;
+        }
+        int[] lits = clause.clone();
+        for (int lit : lits) {
+            ensureVariable(Math.abs(lit));
+        }
+        // Move the literals which are not false to the front, to be watched
+        int open = 0;
+        for (int i = 0; i < lits.length; i++) {
+            if (valueOf(lits[i]) >= 0) {
+                int tmp = lits[open];
+                lits[open++] = lits[i];
+                lits[i] = tmp;
+            }
+        }
+        if (open == 0) {
+            inconsistent = true;
+            return;
+        }
+        if (lits.length >= 2) {
+            clauses.add(lits);
+            watch(lits[0], clauses.size() - 1);
+            watch(lits[1], clauses.size() - 1);
+        }
+        if (open == 1 && valueOf(lits[0]) == 0) {
+            assign(lits[0]);
+            if (!propagate()) {
+                inconsistent = true;
+            }
+        }
+    }
+
+    /**
+     * Check whether a literal fails, i.e. its assumption leads to a conflict by unit propagation
+     *
+     * @param literal which is assumed
+     * @return true if the clauses and the literal are unsatisfiable
+     */
+    public boolean isFailed(int literal) {
+        if (inconsistent) {
+            return true;
+        }
+        ensureVariable(Math.abs(literal));
+        int value = valueOf(literal);
+        if (value != 0) {
+            return value < 0;
+        }
+        int mark = trailSize;
+        assign(literal);
+        boolean consistent = propagate();
+        // Undo everything the assumption implied
+        while (trailSize > mark) {
+            values[Math.abs(trail[--trailSize])] = 0;
+        }
+        head = mark;
+        return !consistent;
+    }
+
+    /**
+     * Propagate the assignments on the trail which have not been propagated yet
+     *
+     * @return false on a conflict
+     */
+    private boolean propagate() {
+        while (head < trailSize) {
+            // Clauses watching the literal which has just become false
+            int falseLit = -trail[head++];
+            int index = indexOf(falseLit);
+            int[] list = watches[index];
+            int n = nWatches[index];
+            int kept = 0;
+            int i = 0;
+            boolean conflict = false;
+            while (i < n) {
+                int c = list[i++];
+                int[] lits = clauses.get(c);
+                if (lits[0] == falseLit) {
+                    lits[0] = lits[1];
+                    lits[1] = falseLit;
+                }
+                if (valueOf(lits[0]) > 0) {
+                    list[kept++] = c;
+                    continue;
+                }
+                boolean moved = false;
+                for (int k = 2; k < lits.length; k++) {
+                    if (valueOf(lits[k]) >= 0) {
+                        lits[1] = lits[k];
+                        lits[k] = falseLit;
+                        watch(lits[1], c);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) {
+                    continue;
+                }
+                list[kept++] = c;
+                if (valueOf(lits[0]) < 0) {
+                    conflict = true;
+                    break;
+                }
+                assign(lits[0]);
+            }
+            // Keep the watches which were not visited after a conflict
+            while (i < n) {
+                list[kept++] = list[i++];
+            }
+            nWatches[index] = kept;
+            if (conflict) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Make a literal true
+     *
+     * @param literal
+     */
+    private void assign(int literal) {
+        values[Math.abs(literal)] = (byte) (literal > 0 ? 1 : -1);
+        if (trailSize == trail.length) {
+            trail = Arrays.copyOf(trail, trailSize * 2);
+        }
+        trail[trailSize++] = literal;
+    }
+
+    /**
+     * Return the value of a literal
+     *
+     * @param literal
+     * @return 1 if true, -1 if false, 0 if unassigned
+     */
+    private int valueOf(int literal) {
+        int value = values[Math.abs(literal)];
+        return literal > 0 ? value : -value;
+    }
+
+    /**
+     * Add a clause to the watch list of a literal
+     *
+     * @param literal
+     * @param clause index of the clause
+     */
+    private void watch(int literal, int clause) {
+        int index = indexOf(literal);
+        if (nWatches[index] == watches[index].length) {
+            watches[index] = Arrays.copyOf(watches[index], Math.max(4, nWatches[index] * 2));
+        }
+        watches[index][nWatches[index]++] = clause;
+    }
+
+    /**
+     * Return the index of a literal in the watch lists
+     *
+     * @param literal
+     * @return the index
+     */
+    private static int indexOf(int literal) {
+        return literal > 0 ? 2 * literal : -2 * literal + 1;
+    }
+
+    /**
+     * Grow the arrays to hold a variable
+     *
+     * @param variable
+     */
+    private void ensureVariable(int variable) {
+        if (variable < values.length) {
+            return;
+        }
+        int size = Math.max(variable + 1, values.length * 2);
+        values = Arrays.copyOf(values, size);
+        int oldSize = watches.length;
+        watches = Arrays.copyOf(watches, 2 * size);
+        nWatches = Arrays.copyOf(nWatches, 2 * size);
+        for (int i = oldSize; i < watches.length; i++) {
+            watches[i] = new int[0];
+        }
+        if (trail.length < size) {
+            trail = Arrays.copyOf(trail, size);
+        }
+    }
+}
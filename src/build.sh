@@ -0,0 +1,33 @@
+#!/bin/sh
+# Builds ../build/sweeper.jar and an AppCDS archive of the classes a game loads,
+# so that playSweeper.sh neither compiles nor cold-loads the solver libraries on every run.
+
+DIRM=`cd "$(dirname "$0")" && pwd`
+
+BUILD="$DIRM/../build"
+
+LIBS="$DIRM/../libs"
+
+CLASSPATH="$LIBS/org.sat4j.core.jar:$LIBS/logicng-2.4.1.jar:$LIBS/antlr-runtime-4.9.3.jar"
+
+# ByteLanes uses the incubating Vector API, which has to be added to both javac and java
+MODULES="--add-modules jdk.incubator.vector"
+
+rm -rf "$BUILD/classes"
+mkdir -p "$BUILD/classes"
+
+# Every lint is on, so that a new warning shows up in the build that introduced it.
+# The one warning left is javac's notice that the Vector API module is incubating.
+javac -Xlint:all $MODULES -d "$BUILD/classes" -cp "$CLASSPATH" "$DIRM"/*.java || exit 1
+
+# The libraries are found next to the jar, relative to its location
+printf "Main-Class: A3main\nClass-Path: ../libs/org.sat4j.core.jar ../libs/logicng-2.4.1.jar ../libs/antlr-runtime-4.9.3.jar\n" > "$BUILD/manifest.txt"
+
+jar cfm "$BUILD/sweeper.jar" "$BUILD/manifest.txt" -C "$BUILD/classes" . || exit 1
+
+# A training game loads the classes of the strategies and of every solver backend, which are dumped at exit
+rm -f "$BUILD/sweeper.jsa"
+java $MODULES -XX:ArchiveClassesAtExit="$BUILD/sweeper.jsa" -cp "$BUILD/sweeper.jar" A3main P4 MEDIUM1 headless count compile portfolio="$BUILD/training.csv" > /dev/null 2>&1
+rm -f "$BUILD/training.csv"
+
+echo "Built $BUILD/sweeper.jar"
@@ -1,20 +1,22 @@
 #!/bin/sh
 
-DIRM=`pwd`
-
-DIRM_L="$DIRM/../libs"
-
-SAT4J_DIR="$DIRM_L/org.sat4j.core.jar"
-
-LOGICNG_DIR="$DIRM_L/logicng-2.4.1.jar"
-
-ANTLR_DIR="$DIRM_L/antlr-runtime-4.9.3.jar"
-
-CLASSPATH=".:$CLASSPATH:$DIRM:$DIRM_L:$SAT4J_DIR:$LOGICNG_DIR:$ANTLR_DIR"
-
-export CLASSPATH
-
-javac *.java
-
-java A3main $*
-
+DIRM=`cd "$(dirname "$0")" && pwd`
+
+BUILD="$DIRM/../build"
+
+# Build only when a source is newer than the jar, instead of compiling before every game
+if [ ! -f "$BUILD/sweeper.jar" ] || [ -n "`find "$DIRM" -name '*.java' -newer "$BUILD/sweeper.jar"`" ]; then
+    "$DIRM/build.sh" > /dev/null || exit 1
+fi
+
+# With SWEEPER_PORT set, a warm server started by sweeperDaemon.sh plays the game and prints its result line
+if [ -n "$SWEEPER_PORT" ]; then
+    QUERY="type=$1&board=`echo "$2" | sed 's/#/%23/g'`"
+    shift 2
+    for OPTION in "$@"; do
+        QUERY="$QUERY&$OPTION"
+    done
+    exec curl -s -X POST "http://localhost:$SWEEPER_PORT/play?$QUERY"
+fi
+
+exec java --add-modules jdk.incubator.vector -XX:SharedArchiveFile="$BUILD/sweeper.jsa" -Xshare:auto -Xlog:cds=off -jar "$BUILD/sweeper.jar" "$@"
@@ -0,0 +1,14 @@
+#!/bin/sh
+# Starts a warm GameServer on localhost:${SWEEPER_PORT:-8080} for playSweeper.sh, e.g.
+#   ./sweeperDaemon.sh &
+#   SWEEPER_PORT=8080 ./playSweeper.sh P4 MEDIUM1 count
+
+DIRM=`cd "$(dirname "$0")" && pwd`
+
+BUILD="$DIRM/../build"
+
+if [ ! -f "$BUILD/sweeper.jar" ] || [ -n "`find "$DIRM" -name '*.java' -newer "$BUILD/sweeper.jar"`" ]; then
+    "$DIRM/build.sh" > /dev/null || exit 1
+fi
+
+exec java --add-modules jdk.incubator.vector -XX:SharedArchiveFile="$BUILD/sweeper.jsa" -Xshare:auto -Xlog:cds=off -cp "$BUILD/sweeper.jar" GameServer ${SWEEPER_PORT:-8080} "$@"